@@ -4,11 +4,13 @@ import handler.RequestHandler;
 import model.ExtensionConfig;
 import model.RequestLogModel;
 import ui.MainPanel;
+import util.ExtensionLogger;
 
 public class Extension implements BurpExtension {
     private RequestLogModel requestLogModel;
     private ExtensionConfig config;
     private RequestHandler requestHandler;
+    private ExtensionLogger logger;
 
     @Override
     public void initialize(MontoyaApi api) {
@@ -17,15 +19,18 @@ public class Extension implements BurpExtension {
         // Initialize the config
         config = new ExtensionConfig();
 
+        // Level-gated output, drained off the request path
+        logger = new ExtensionLogger(api.logging(), config);
+
         // Initialize the data model
         requestLogModel = new RequestLogModel();
 
         // Register HTTP handler
-        requestHandler = new RequestHandler(api, requestLogModel, config);
+        requestHandler = new RequestHandler(api, requestLogModel, config, logger);
         api.http().registerHttpHandler(requestHandler);
 
         // Create and register the UI
-        MainPanel mainPanel = new MainPanel(api, requestLogModel, config, requestHandler);
+        MainPanel mainPanel = new MainPanel(api, requestLogModel, config, requestHandler, logger);
         api.userInterface().registerSuiteTab("Auth Mutator", mainPanel);
 
         api.logging().logToOutput("Auth Mutator Loaded Successfully!");
@@ -37,6 +42,8 @@ public class Extension implements BurpExtension {
             if (requestHandler != null) {
                 requestHandler.shutdown();
             }
+            mainPanel.shutdown();
+            logger.shutdown();
         });
     }
 
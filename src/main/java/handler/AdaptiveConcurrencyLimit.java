@@ -0,0 +1,116 @@
+package handler;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AIMD concurrency limit for synthetic sends, driven by observed latency.
+ * <p>
+ * Completed sends are collected into windows of at least {@link #MIN_WINDOW}
+ * samples, or one sample per permit when the limit is larger. At the end of
+ * each window the p90 latency is compared with a baseline, the lowest p90
+ * seen so far, which drifts slowly upwards so a target that becomes
+ * permanently slower is eventually accepted. The limit is cut by a quarter
+ * when p90 exceeds the baseline by {@link #LATENCY_TOLERANCE} or when more
+ * than {@link #MAX_OVERLOAD_RATIO} of the window were 5xx, 429 or failed
+ * sends. Otherwise it grows by one permit, but only if the scheduler actually
+ * had work waiting on the limit during the window.
+ * <p>
+ * Samples are always collected so the percentiles can be shown; the limit is
+ * only adjusted while adaptive concurrency is enabled. Not thread safe; the
+ * scheduler only calls it while holding its lock.
+ */
+final class AdaptiveConcurrencyLimit {
+    private static final int MIN_WINDOW = 20;
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double MAX_OVERLOAD_RATIO = 0.1;
+    private static final double DECREASE_FACTOR = 0.75;
+    private static final double BASELINE_DRIFT = 0.05;
+
+    private double limit;
+    private long[] samples = new long[MIN_WINDOW];
+    private int count;
+    private int overloaded;
+    private boolean saturated;
+    private long baselineP90 = -1;
+    private long lastP50 = -1;
+    private long lastP90 = -1;
+
+    AdaptiveConcurrencyLimit(int initialLimit) {
+        this.limit = Math.max(1, initialLimit);
+    }
+
+    /**
+     * Current limit, never above {@code ceiling}.
+     */
+    int limit(int ceiling) {
+        if (limit > ceiling) {
+            limit = ceiling;
+        }
+        return Math.max(1, (int) limit);
+    }
+
+    /**
+     * Notes that queued work was held back by the limit.
+     */
+    void markSaturated() {
+        saturated = true;
+    }
+
+    /**
+     * Adds one completed send; {@code overload} is true for 5xx, 429 and
+     * sends without a response.
+     */
+    void record(long latencyNanos, boolean overload, int ceiling, boolean adjust) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = Math.max(0, latencyNanos);
+        if (overload) {
+            overloaded++;
+        }
+        if (count >= Math.max(MIN_WINDOW, (int) limit)) {
+            endWindow(ceiling, adjust);
+        }
+    }
+
+    /** Median latency of the last full window, or -1 before the first one. */
+    long p50Millis() {
+        return lastP50 < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(lastP50);
+    }
+
+    /** 90th percentile latency of the last full window, or -1 before the first one. */
+    long p90Millis() {
+        return lastP90 < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(lastP90);
+    }
+
+    private void endWindow(int ceiling, boolean adjust) {
+        Arrays.sort(samples, 0, count);
+        lastP50 = samples[(count - 1) / 2];
+        lastP90 = samples[(count - 1) * 9 / 10];
+        boolean overloadedWindow = overloaded > count * MAX_OVERLOAD_RATIO;
+        boolean slower = baselineP90 >= 0 && lastP90 > baselineP90 * LATENCY_TOLERANCE;
+
+        if (adjust) {
+            if (overloadedWindow || slower) {
+                limit = Math.max(1, limit * DECREASE_FACTOR);
+            } else if (saturated) {
+                limit = Math.min(ceiling, limit + 1);
+            }
+        }
+        if (!overloadedWindow) {
+            if (baselineP90 < 0 || lastP90 < baselineP90) {
+                baselineP90 = lastP90;
+            } else {
+                baselineP90 += (long) ((lastP90 - baselineP90) * BASELINE_DRIFT);
+            }
+        }
+
+        count = 0;
+        overloaded = 0;
+        saturated = false;
+        if (samples.length > MIN_WINDOW && samples.length > 2 * limit) {
+            samples = new long[Math.max(MIN_WINDOW, (int) limit)];
+        }
+    }
+}
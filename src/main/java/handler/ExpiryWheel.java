@@ -0,0 +1,137 @@
+package handler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel that expires integer keys after a time to live.
+ * <p>
+ * Scheduling appends to one slot and never touches the others, so it is O(1)
+ * however many keys are waiting. A single daemon thread advances the wheel one
+ * slot per tick and hands every key whose deadline has passed to the
+ * {@link Expirer}. Keys are never removed early: a key that was resolved in
+ * the meantime is simply reported, and the expirer recognises it as stale by
+ * its stamp. Each key costs one small record until its slot comes round; no
+ * reference to the tracked object is held.
+ */
+final class ExpiryWheel {
+    /**
+     * Receives keys whose deadline has passed. Returns true when something was
+     * actually evicted, false for keys that had already been resolved.
+     */
+    interface Expirer {
+        boolean expire(int key, long stamp);
+    }
+
+    private static final int SLOTS = 512;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final Expirer expirer;
+    private final ScheduledExecutorService ticker;
+    private final ArrayDeque<Timeout>[] slots;
+    /** Evictions per tick over the last minute, indexed by tick. */
+    private final int[] recentExpiries;
+    private long tick;
+    private long expiredTotal;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ExpiryWheel(String threadName, long tickMillis, Expirer expirer) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.expirer = expirer;
+        this.slots = new ArrayDeque[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.recentExpiries = new int[(int) Math.max(1, TimeUnit.MINUTES.toMillis(1) / this.tickMillis)];
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::advance, this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reports {@code key} to the expirer once {@code ttlMillis} have passed,
+     * rounded up to whole ticks.
+     */
+    synchronized void schedule(int key, long stamp, long ttlMillis) {
+        long ticks = Math.max(1, (ttlMillis + tickMillis - 1) / tickMillis);
+        long deadline = tick + ticks;
+        slots[(int) (deadline & MASK)].add(new Timeout(key, stamp, deadline));
+    }
+
+    synchronized long expiredTotal() {
+        return expiredTotal;
+    }
+
+    synchronized long expiredLastMinute() {
+        long sum = 0;
+        for (int count : recentExpiries) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    synchronized void clear() {
+        for (ArrayDeque<Timeout> slot : slots) {
+            slot.clear();
+        }
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+        clear();
+    }
+
+    private void advance() {
+        List<Timeout> due;
+        long now;
+        synchronized (this) {
+            now = ++tick;
+            ArrayDeque<Timeout> slot = slots[(int) (now & MASK)];
+            due = new ArrayList<>();
+            Iterator<Timeout> it = slot.iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                // Keys more than one rotation away stay for a later pass
+                if (timeout.deadline <= now) {
+                    it.remove();
+                    due.add(timeout);
+                }
+            }
+        }
+        int expired = 0;
+        for (Timeout timeout : due) {
+            try {
+                if (expirer.expire(timeout.key, timeout.stamp)) {
+                    expired++;
+                }
+            } catch (RuntimeException e) {
+                // Keep ticking; one bad record must not stop expiry for the rest
+            }
+        }
+        synchronized (this) {
+            expiredTotal += expired;
+            recentExpiries[(int) (now % recentExpiries.length)] = expired;
+        }
+    }
+
+    private static final class Timeout {
+        final int key;
+        final long stamp;
+        final long deadline;
+
+        Timeout(int key, long stamp, long deadline) {
+            this.key = key;
+            this.stamp = stamp;
+            this.deadline = deadline;
+        }
+    }
+}
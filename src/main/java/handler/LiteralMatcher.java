@@ -0,0 +1,151 @@
+package handler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a fixed set of literal patterns.
+ * <p>
+ * Patterns and text are expected in the ISO-8859-1 form produced by
+ * {@link RequestEditBuffer}, so every character is a single byte. The
+ * transition table is a complete DFA over a compressed alphabet (only the
+ * characters that occur in patterns get their own column), which keeps the
+ * scan to one table lookup per input character.
+ */
+final class LiteralMatcher {
+    private final int patternCount;
+    private final int[] patternLengths;
+    private final int[] charClass = new int[256];
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    LiteralMatcher(List<String> patterns) {
+        this.patternCount = patterns.size();
+        this.patternLengths = new int[patternCount];
+
+        int classes = 1; // class 0 = any character not used by a pattern
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                int c = pattern.charAt(i) & 0xFF;
+                if (charClass[c] == 0) {
+                    charClass[c] = classes++;
+                }
+            }
+        }
+        this.alphabetSize = classes;
+
+        // Build the trie
+        List<int[]> gotoRows = new ArrayList<>();
+        List<List<Integer>> terminal = new ArrayList<>();
+        gotoRows.add(newRow());
+        terminal.add(new ArrayList<>());
+        for (int p = 0; p < patternCount; p++) {
+            String pattern = patterns.get(p);
+            patternLengths[p] = pattern.length();
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int cls = charClass[pattern.charAt(i) & 0xFF];
+                int next = gotoRows.get(state)[cls];
+                if (next < 0) {
+                    next = gotoRows.size();
+                    gotoRows.add(newRow());
+                    terminal.add(new ArrayList<>());
+                    gotoRows.get(state)[cls] = next;
+                }
+                state = next;
+            }
+            terminal.get(state).add(p);
+        }
+
+        // Breadth-first failure links, folded into a complete transition table
+        int states = gotoRows.size();
+        int[] fail = new int[states];
+        this.transitions = new int[states * alphabetSize];
+        this.outputs = new int[states][];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] root = gotoRows.get(0);
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            int next = root[cls];
+            if (next < 0) {
+                transitions[cls] = 0;
+            } else {
+                transitions[cls] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        outputs[0] = toArray(terminal.get(0));
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] merged = toArray(terminal.get(state));
+            int[] inherited = outputs[fail[state]];
+            if (inherited.length > 0) {
+                int[] combined = Arrays.copyOf(merged, merged.length + inherited.length);
+                System.arraycopy(inherited, 0, combined, merged.length, inherited.length);
+                merged = combined;
+            }
+            outputs[state] = merged;
+
+            int[] row = gotoRows.get(state);
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                int next = row[cls];
+                if (next < 0) {
+                    transitions[state * alphabetSize + cls] = transitions[fail[state] * alphabetSize + cls];
+                } else {
+                    transitions[state * alphabetSize + cls] = next;
+                    fail[next] = transitions[fail[state] * alphabetSize + cls];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the text once and returns, per pattern, the ascending start offsets of
+     * every occurrence (overlapping occurrences included). Patterns without a
+     * match get {@code null}.
+     */
+    int[][] findAll(CharSequence text) {
+        int[][] starts = new int[patternCount][];
+        int[] counts = new int[patternCount];
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * alphabetSize + charClass[text.charAt(i) & 0xFF]];
+            int[] hits = outputs[state];
+            for (int hit : hits) {
+                int[] list = starts[hit];
+                if (list == null) {
+                    list = new int[4];
+                    starts[hit] = list;
+                } else if (counts[hit] == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    starts[hit] = list;
+                }
+                list[counts[hit]++] = i + 1 - patternLengths[hit];
+            }
+        }
+        for (int p = 0; p < patternCount; p++) {
+            if (starts[p] != null) {
+                starts[p] = Arrays.copyOf(starts[p], counts[p]);
+            }
+        }
+        return starts;
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
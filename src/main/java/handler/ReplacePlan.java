@@ -0,0 +1,542 @@
+package handler;
+
+import burp.api.montoya.http.message.requests.HttpRequest;
+import model.ReplaceRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable, pre-compiled form of the configured replace rules.
+ * <p>
+ * Built once whenever the rules or user roles change so that the request hot
+ * path never copies operations, recompiles regular expressions, re-sanitizes
+ * replacement values or searches for target roles.
+ * <p>
+ * Execution is described by a flat list of {@link Step}s. Runs of literal
+ * whole-request or body replacements that cannot influence each other are
+ * merged into a single {@link LiteralBatch}, which finds every occurrence of
+ * every pattern in one pass and then applies them in rule order.
+ */
+final class ReplacePlan {
+    static final ReplacePlan EMPTY = new ReplacePlan(List.of(), List.of(), null);
+
+    private final List<CompiledRule> rules;
+    private final List<Step> steps;
+    /** Scope index, or {@code null} when no rule is scoped. */
+    private final RuleIndex index;
+
+    private ReplacePlan(List<CompiledRule> rules, List<Step> steps, RuleIndex index) {
+        this.rules = rules;
+        this.steps = steps;
+        this.index = index;
+    }
+
+    static ReplacePlan compile(List<ReplaceRule> rules, Map<String, RoleDelta> rolesByName,
+            Consumer<String> errorLog) {
+        if (rules == null || rules.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<CompiledRule> compiled = new ArrayList<>();
+        for (ReplaceRule rule : rules) {
+            if (rule == null || !rule.isEnabled() || !rule.hasWorkToDo()) {
+                continue;
+            }
+            RoleDelta targetRole = null;
+            String targetRoleName = rule.getTargetRole();
+            if (targetRoleName != null && !targetRoleName.isEmpty()) {
+                targetRole = rolesByName.get(targetRoleName);
+            }
+            List<CompiledOperation> operations = new ArrayList<>();
+            for (ReplaceRule.ReplaceOperation operation : rule.getOperations()) {
+                operations.add(CompiledOperation.compile(operation, errorLog));
+            }
+            compiled.add(new CompiledRule(rule, targetRole, operations));
+        }
+        if (compiled.isEmpty()) {
+            return EMPTY;
+        }
+        return new ReplacePlan(List.copyOf(compiled), buildSteps(compiled), RuleIndex.build(compiled));
+    }
+
+    private static List<Step> buildSteps(List<CompiledRule> rules) {
+        List<Step> steps = new ArrayList<>();
+        BatchBuilder pending = null;
+        for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+            CompiledRule rule = rules.get(ruleIndex);
+            if (rule.hasTargetRole()) {
+                // Role tokens rewrite headers, so literal runs must not span them
+                flush(pending, steps);
+                pending = null;
+                steps.add(Step.role(ruleIndex));
+            }
+            for (CompiledOperation operation : rule.operations) {
+                if (!operation.isBatchableLiteral()) {
+                    flush(pending, steps);
+                    pending = null;
+                    steps.add(Step.operation(ruleIndex, operation));
+                } else if (pending != null && pending.accepts(operation)) {
+                    pending.add(ruleIndex, operation);
+                } else {
+                    flush(pending, steps);
+                    pending = new BatchBuilder(ruleIndex, operation);
+                }
+            }
+        }
+        flush(pending, steps);
+        return List.copyOf(steps);
+    }
+
+    private static void flush(BatchBuilder pending, List<Step> steps) {
+        if (pending == null) {
+            return;
+        }
+        if (pending.operations.size() == 1) {
+            steps.add(Step.operation(pending.ruleIndexes.get(0), pending.operations.get(0)));
+        } else {
+            steps.add(Step.batch(pending.build()));
+        }
+    }
+
+    List<CompiledRule> rules() {
+        return rules;
+    }
+
+    List<Step> steps() {
+        return steps;
+    }
+
+    /**
+     * Returns one flag per rule telling whether the rule's scope covers the
+     * request, or {@code null} when every rule applies.
+     */
+    boolean[] candidateRules(HttpRequest request) {
+        if (index == null) {
+            return null;
+        }
+        String host = request.httpService() != null ? request.httpService().host() : "";
+        return index.candidates(host, request.method(), request.pathWithoutQuery());
+    }
+
+    enum StepKind {
+        ROLE,
+        OPERATION,
+        LITERAL_BATCH
+    }
+
+    static final class Step {
+        final StepKind kind;
+        /** Index into {@link #rules()}, or -1 for batches (see {@link LiteralBatch#ruleIndexes}). */
+        final int ruleIndex;
+        final CompiledOperation operation;
+        final LiteralBatch batch;
+
+        private Step(StepKind kind, int ruleIndex, CompiledOperation operation, LiteralBatch batch) {
+            this.kind = kind;
+            this.ruleIndex = ruleIndex;
+            this.operation = operation;
+            this.batch = batch;
+        }
+
+        static Step role(int ruleIndex) {
+            return new Step(StepKind.ROLE, ruleIndex, null, null);
+        }
+
+        static Step operation(int ruleIndex, CompiledOperation operation) {
+            return new Step(StepKind.OPERATION, ruleIndex, operation, null);
+        }
+
+        static Step batch(LiteralBatch batch) {
+            return new Step(StepKind.LITERAL_BATCH, -1, null, batch);
+        }
+    }
+
+    /**
+     * Consecutive literal replacements of the same target, applied as one scan.
+     * <p>
+     * The result is identical to running {@link String#replace} for each operation
+     * in order: an operation only takes occurrences that do not overlap text already
+     * claimed by an earlier operation, and the compiler never batches two operations
+     * where the earlier replacement could create or complete a later match.
+     */
+    static final class LiteralBatch {
+        final ReplaceRule.OperationType type;
+        final List<CompiledOperation> operations;
+        final int[] ruleIndexes;
+        private final LiteralMatcher matcher;
+
+        private LiteralBatch(ReplaceRule.OperationType type, List<CompiledOperation> operations, int[] ruleIndexes) {
+            this.type = type;
+            this.operations = operations;
+            this.ruleIndexes = ruleIndexes;
+            List<String> patterns = new ArrayList<>(operations.size());
+            for (CompiledOperation operation : operations) {
+                patterns.add(operation.match);
+            }
+            this.matcher = new LiteralMatcher(patterns);
+        }
+
+        /**
+         * Applies every operation whose rule is active ({@code activeRules} may be
+         * {@code null} for all). Sets {@code changed[i]} for each operation that
+         * altered the text and returns the new text, or {@code null} when nothing
+         * changed.
+         */
+        String apply(String text, boolean[] activeRules, boolean[] changed) {
+            int[][] starts = matcher.findAll(text);
+            // start offset -> {end offset, operation index}
+            TreeMap<Integer, int[]> claimed = new TreeMap<>();
+            boolean any = false;
+            for (int op = 0; op < operations.size(); op++) {
+                int[] candidates = starts[op];
+                if (candidates == null || (activeRules != null && !activeRules[ruleIndexes[op]])) {
+                    continue;
+                }
+                CompiledOperation operation = operations.get(op);
+                int length = operation.match.length();
+                boolean identity = operation.match.equals(operation.replace);
+                int ownEnd = 0;
+                for (int start : candidates) {
+                    int end = start + length;
+                    if (start < ownEnd || overlaps(claimed, start, end)) {
+                        continue;
+                    }
+                    claimed.put(start, new int[] { end, op });
+                    ownEnd = end;
+                    if (!identity) {
+                        changed[op] = true;
+                        any = true;
+                    }
+                }
+            }
+            if (!any) {
+                return null;
+            }
+
+            StringBuilder result = new StringBuilder(text.length());
+            int cursor = 0;
+            for (Map.Entry<Integer, int[]> entry : claimed.entrySet()) {
+                result.append(text, cursor, entry.getKey());
+                result.append(operations.get(entry.getValue()[1]).replace);
+                cursor = entry.getValue()[0];
+            }
+            result.append(text, cursor, text.length());
+            return result.toString();
+        }
+
+        private static boolean overlaps(TreeMap<Integer, int[]> claimed, int start, int end) {
+            Map.Entry<Integer, int[]> before = claimed.floorEntry(start);
+            if (before != null && before.getValue()[0] > start) {
+                return true;
+            }
+            Integer after = claimed.ceilingKey(start);
+            return after != null && after < end;
+        }
+    }
+
+    private static final class BatchBuilder {
+        private final ReplaceRule.OperationType type;
+        private final List<CompiledOperation> operations = new ArrayList<>();
+        private final List<Integer> ruleIndexes = new ArrayList<>();
+
+        BatchBuilder(int ruleIndex, CompiledOperation first) {
+            this.type = first.type;
+            add(ruleIndex, first);
+        }
+
+        void add(int ruleIndex, CompiledOperation operation) {
+            operations.add(operation);
+            ruleIndexes.add(ruleIndex);
+        }
+
+        boolean accepts(CompiledOperation operation) {
+            if (operation.type != type) {
+                return false;
+            }
+            for (CompiledOperation earlier : operations) {
+                if (interferes(earlier, operation)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        LiteralBatch build() {
+            int[] indexes = new int[ruleIndexes.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = ruleIndexes.get(i);
+            }
+            return new LiteralBatch(type, List.copyOf(operations), indexes);
+        }
+
+        /**
+         * True when applying {@code earlier} first could produce an occurrence of
+         * {@code later}'s pattern that does not exist in the original text.
+         */
+        private static boolean interferes(CompiledOperation earlier, CompiledOperation later) {
+            String replacement = earlier.replace;
+            String pattern = later.match;
+            if (replacement.isEmpty()) {
+                // A deletion can splice its neighbours together
+                return pattern.length() > 1;
+            }
+            if (replacement.contains(pattern) || pattern.contains(replacement)) {
+                return true;
+            }
+            int limit = Math.min(replacement.length(), pattern.length());
+            for (int k = 1; k < limit; k++) {
+                if (replacement.endsWith(pattern.substring(0, k))
+                        || pattern.endsWith(replacement.substring(0, k))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class CompiledRule {
+        final String name;
+        final String targetRoleName;
+        final RoleDelta targetRole;
+        final List<CompiledOperation> operations;
+        final String hostPattern;
+        final String pathPrefix;
+        final String method;
+
+        private CompiledRule(ReplaceRule rule, RoleDelta targetRole, List<CompiledOperation> operations) {
+            this.name = rule.getName();
+            this.hostPattern = rule.getHostPattern();
+            this.pathPrefix = rule.getPathPrefix();
+            this.method = rule.getMethod();
+            this.targetRoleName = targetRole != null ? targetRole.name : null;
+            this.targetRole = targetRole;
+            this.operations = List.copyOf(operations);
+        }
+
+        boolean hasTargetRole() {
+            return targetRoleName != null;
+        }
+
+        boolean isScoped() {
+            return !hostPattern.isEmpty() || !pathPrefix.isEmpty() || !method.isEmpty();
+        }
+    }
+
+    static final class CompiledOperation {
+        final ReplaceRule.OperationType type;
+        final boolean useRegex;
+        /** Match pattern as configured, in wire form. */
+        final String match;
+        /** Replacement value as configured, in wire form. */
+        final String replace;
+        /** Compiled regex, or {@code null} for literal matching or an invalid expression. */
+        final Pattern pattern;
+        /** True when the operation can never match (empty pattern or invalid regex). */
+        final boolean inert;
+        /** Replacement value trimmed once, ready for per-name prefix stripping. */
+        final String trimmedReplace;
+        /** Replacement value reduced to a bare token name for rename operations. */
+        final String tokenName;
+        /**
+         * Replacement already sanitized for the literal match name, used when the
+         * matched name is known up front (non-regex name matches and header adds).
+         */
+        final String sanitizedForMatch;
+        /** Header name/value parsed from the replacement when a header is added. */
+        final String addedHeaderName;
+        final String addedHeaderValue;
+        final String description;
+
+        private CompiledOperation(ReplaceRule.OperationType type, boolean useRegex, String match, String replace,
+                Pattern pattern, boolean inert, String sanitizedForMatch, String addedHeaderName,
+                String addedHeaderValue, String description) {
+            this.type = type;
+            this.useRegex = useRegex;
+            this.match = match;
+            this.replace = replace;
+            this.pattern = pattern;
+            this.inert = inert;
+            this.trimmedReplace = replace.trim();
+            this.tokenName = sanitizeTokenName(replace);
+            this.sanitizedForMatch = sanitizedForMatch;
+            this.addedHeaderName = addedHeaderName;
+            this.addedHeaderValue = addedHeaderValue;
+            this.description = description;
+        }
+
+        static CompiledOperation compile(ReplaceRule.ReplaceOperation operation, Consumer<String> errorLog) {
+            ReplaceRule.OperationType type = operation.getType();
+            // Requests are edited as ISO-8859-1 text, so match and replace are
+            // converted to the same representation up front.
+            String match = RequestEditBuffer.wire(operation.getMatchPattern());
+            String replace = RequestEditBuffer.wire(operation.getReplaceValue());
+            boolean useRegex = operation.isUseRegex();
+            String description = operation.describe();
+
+            boolean headerNameMatch = type == ReplaceRule.OperationType.REQUEST_HEADER
+                    || type == ReplaceRule.OperationType.REMOVE_HEADER_BY_NAME
+                    || type == ReplaceRule.OperationType.MATCH_HEADER_NAME_REPLACE_VALUE;
+            if (type == ReplaceRule.OperationType.REQUEST_HEADER) {
+                match = match.trim();
+            }
+
+            Pattern pattern = null;
+            boolean inert = match.isEmpty() && type != ReplaceRule.OperationType.REQUEST_HEADER;
+            if (useRegex && !match.isEmpty()) {
+                pattern = compileRegex(type, match, headerNameMatch, description, errorLog);
+                inert = pattern == null;
+            }
+
+            String sanitizedForMatch = null;
+            String addedHeaderName = null;
+            String addedHeaderValue = null;
+            switch (type) {
+                case REQUEST_HEADER -> {
+                    if (match.isEmpty()) {
+                        int colon = replace.indexOf(':');
+                        addedHeaderName = colon < 0 ? replace.trim() : replace.substring(0, colon).trim();
+                        addedHeaderValue = colon < 0 ? "" : replace.substring(colon + 1).trim();
+                    } else {
+                        sanitizedForMatch = sanitizeHeaderValue(match, replace);
+                    }
+                }
+                case MATCH_HEADER_NAME_REPLACE_VALUE -> sanitizedForMatch = sanitizeHeaderValue(match, replace);
+                case MATCH_PARAM_NAME_REPLACE_VALUE -> sanitizedForMatch = sanitizeParameterValue(match, replace);
+                case MATCH_COOKIE_NAME_REPLACE_VALUE -> sanitizedForMatch = sanitizeCookieValue(match, replace);
+                default -> {
+                }
+            }
+
+            return new CompiledOperation(type, useRegex, match, replace, pattern, inert, sanitizedForMatch,
+                    addedHeaderName, addedHeaderValue, description);
+        }
+
+        private static Pattern compileRegex(ReplaceRule.OperationType type, String match, boolean ignoreCase,
+                String description, Consumer<String> errorLog) {
+            // Whole-request and body replacements historically used String.replaceAll,
+            // which compiles without flags; element matches use DOTALL.
+            int flags = 0;
+            if (type != ReplaceRule.OperationType.REQUEST_STRING && type != ReplaceRule.OperationType.REQUEST_BODY) {
+                flags = Pattern.DOTALL;
+                if (ignoreCase) {
+                    flags |= Pattern.CASE_INSENSITIVE;
+                }
+            }
+            try {
+                return Pattern.compile(match, flags);
+            } catch (PatternSyntaxException ex) {
+                if (errorLog != null) {
+                    errorLog.accept("Invalid regex in operation " + description + ": " + ex.getMessage());
+                }
+                return null;
+            }
+        }
+
+        boolean isBatchableLiteral() {
+            return !useRegex && !inert
+                    && (type == ReplaceRule.OperationType.REQUEST_STRING
+                            || type == ReplaceRule.OperationType.REQUEST_BODY);
+        }
+
+        boolean matches(String candidate, boolean ignoreCase) {
+            if (inert || candidate == null) {
+                return false;
+            }
+            if (useRegex) {
+                return pattern.matcher(candidate).find();
+            }
+            return ignoreCase ? candidate.equalsIgnoreCase(match) : candidate.equals(match);
+        }
+
+        String headerValueFor(String headerName) {
+            if (sanitizedForMatch != null && headerName.equalsIgnoreCase(match)) {
+                return sanitizedForMatch;
+            }
+            return sanitizeHeaderValue(headerName, replace);
+        }
+
+        String parameterValueFor(String parameterName) {
+            if (sanitizedForMatch != null && parameterName.equals(match)) {
+                return sanitizedForMatch;
+            }
+            return stripNamePrefix(parameterName, trimmedReplace);
+        }
+
+        String cookieValueFor(String cookieName) {
+            if (sanitizedForMatch != null && cookieName.equals(match)) {
+                return sanitizedForMatch;
+            }
+            return sanitizeCookieValue(cookieName, replace);
+        }
+    }
+
+    static String sanitizeHeaderValue(String headerName, String replacement) {
+        if (replacement == null) {
+            return "";
+        }
+        String trimmed = replacement.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon >= 0) {
+            String possibleName = trimmed.substring(0, colon).trim();
+            String possibleValue = trimmed.substring(colon + 1).trim();
+            if (!possibleValue.isEmpty() && possibleName.equalsIgnoreCase(headerName)) {
+                return possibleValue;
+            }
+        }
+        return trimmed;
+    }
+
+    static String sanitizeTokenName(String input) {
+        if (input == null) {
+            return "";
+        }
+        String trimmed = input.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon >= 0) {
+            trimmed = trimmed.substring(0, colon).trim();
+        }
+        int equals = trimmed.indexOf('=');
+        if (equals >= 0) {
+            trimmed = trimmed.substring(0, equals).trim();
+        }
+        return trimmed;
+    }
+
+    static String sanitizeParameterValue(String parameterName, String replacement) {
+        if (replacement == null) {
+            return "";
+        }
+        return stripNamePrefix(parameterName, replacement.trim());
+    }
+
+    static String sanitizeCookieValue(String cookieName, String replacement) {
+        if (replacement == null) {
+            return "";
+        }
+        String trimmed = replacement.trim();
+        if (trimmed.regionMatches(true, 0, "cookie:", 0, 7)) {
+            trimmed = trimmed.substring(7).trim();
+        }
+        return stripNamePrefix(cookieName, trimmed);
+    }
+
+    private static String stripNamePrefix(String name, String trimmed) {
+        if (name != null && !name.isEmpty()) {
+            String equalsPrefix = name + "=";
+            if (trimmed.startsWith(equalsPrefix)) {
+                return trimmed.substring(equalsPrefix.length()).trim();
+            }
+            String spacedPrefix = name + " =";
+            if (trimmed.startsWith(spacedPrefix)) {
+                return trimmed.substring(spacedPrefix.length()).trim();
+            }
+        }
+        return trimmed;
+    }
+}
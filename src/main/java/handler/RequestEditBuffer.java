@@ -0,0 +1,507 @@
+package handler;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable view over the raw bytes of a request.
+ * <p>
+ * The request line, headers, query parameters, form body parameters and
+ * cookies are parsed at most once, edited in place, and serialized back into a
+ * single {@link HttpRequest} by {@link #toRequest()}. This replaces the chain
+ * of immutable {@code with*} calls, each of which re-serialized and re-parsed
+ * the whole message.
+ * <p>
+ * Text is handled as ISO-8859-1 so every byte round-trips unchanged; values
+ * coming from the user interface should be passed through {@link #wire(String)}
+ * first so that non-ASCII characters end up UTF-8 encoded on the wire.
+ */
+final class RequestEditBuffer {
+    private static final String CRLF = "\r\n";
+
+    private final HttpRequest source;
+    private final HttpService service;
+
+    private String requestLine;
+    private List<Header> headers;
+    private String lineSeparator;
+    private byte[] raw;
+    private int bodyStart;
+    private int bodyLength;
+    private boolean bodyEdited;
+    private boolean dirty;
+
+    private ParamList queryParams;
+    private ParamList bodyParams;
+    private ParamList cookies;
+
+    private RequestEditBuffer(HttpRequest source) {
+        this.source = source;
+        this.service = source.httpService();
+        parse(source.toByteArray().getBytes());
+    }
+
+    static RequestEditBuffer of(HttpRequest request) {
+        return new RequestEditBuffer(request);
+    }
+
+    /**
+     * Converts user supplied text into the ISO-8859-1 representation of its
+     * UTF-8 bytes, matching how the buffer exposes raw request text.
+     */
+    static String wire(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+            }
+        }
+        return value;
+    }
+
+    HttpRequest source() {
+        return source;
+    }
+
+    /**
+     * Emits the edited request. When nothing was changed the original request is
+     * returned as is.
+     */
+    HttpRequest toRequest() {
+        if (!dirty) {
+            return source;
+        }
+        return HttpRequest.httpRequest(service, ByteArray.byteArray(toBytes()));
+    }
+
+    // ---- Headers ---------------------------------------------------------
+
+    int headerCount() {
+        flushCookies();
+        return headers.size();
+    }
+
+    String headerName(int index) {
+        return headers.get(index).name;
+    }
+
+    String headerValue(int index) {
+        return headers.get(index).value;
+    }
+
+    int indexOfHeader(String name) {
+        flushCookies();
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.get(i).name.equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    boolean setHeaderValue(int index, String value) {
+        Header header = headers.get(index);
+        String newValue = value == null ? "" : value;
+        if (header.value.equals(newValue)) {
+            return false;
+        }
+        header.value = newValue;
+        header.raw = null;
+        headerTouched(header.name);
+        return true;
+    }
+
+    void removeHeader(int index) {
+        Header removed = headers.remove(index);
+        headerTouched(removed.name);
+    }
+
+    void addHeader(String name, String value) {
+        flushCookies();
+        headers.add(new Header(name, value == null ? "" : value, null));
+        headerTouched(name);
+    }
+
+    private void headerTouched(String name) {
+        dirty = true;
+        if ("cookie".equalsIgnoreCase(name)) {
+            cookies = null;
+        }
+    }
+
+    // ---- Parameters ------------------------------------------------------
+
+    ParamList queryParameters() {
+        if (queryParams == null) {
+            queryParams = new ParamList('&');
+            String query = currentQuery();
+            if (query != null) {
+                queryParams.parse(query);
+            }
+        }
+        return queryParams;
+    }
+
+    /**
+     * Returns the {@code application/x-www-form-urlencoded} body parameters, or
+     * an empty list for any other body type.
+     */
+    ParamList bodyParameters() {
+        if (bodyParams == null) {
+            bodyParams = new ParamList('&');
+            if (bodyLength > 0 && isFormEncoded()) {
+                bodyParams.parse(bodyAsString());
+            }
+        }
+        return bodyParams;
+    }
+
+    ParamList cookies() {
+        if (cookies == null) {
+            cookies = new ParamList(';');
+            for (Header header : headers) {
+                if ("cookie".equalsIgnoreCase(header.name)) {
+                    cookies.parse(header.value);
+                }
+            }
+        }
+        return cookies;
+    }
+
+    // ---- Whole message / body --------------------------------------------
+
+    String bodyAsString() {
+        flushBodyParams();
+        return new String(raw, bodyStart, bodyLength, StandardCharsets.ISO_8859_1);
+    }
+
+    void setBody(String body) {
+        flushBodyParams();
+        bodyParams = null;
+        byte[] bytes = body.getBytes(StandardCharsets.ISO_8859_1);
+        replaceBody(bytes);
+    }
+
+    String asString() {
+        return new String(toBytes(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Replaces the whole message. Used by whole-request string replacement;
+     * the new text is taken verbatim, including its Content-Length.
+     */
+    void setAll(String message) {
+        parse(message.getBytes(StandardCharsets.ISO_8859_1));
+        dirty = true;
+    }
+
+    // ---- Internals -------------------------------------------------------
+
+    private void parse(byte[] bytes) {
+        raw = bytes;
+        bodyEdited = false;
+        queryParams = null;
+        bodyParams = null;
+        cookies = null;
+        headers = new ArrayList<>();
+        lineSeparator = CRLF;
+
+        int headerEnd = -1;
+        int bodyOffset = bytes.length;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            if (i + 1 < bytes.length && bytes[i + 1] == '\n') {
+                bodyOffset = i + 2;
+            } else if (i + 2 < bytes.length && bytes[i + 1] == '\r' && bytes[i + 2] == '\n') {
+                bodyOffset = i + 3;
+            } else {
+                continue;
+            }
+            headerEnd = i > 0 && bytes[i - 1] == '\r' ? i - 1 : i;
+            break;
+        }
+        if (headerEnd < 0) {
+            headerEnd = bytes.length;
+        }
+
+        String head = new String(bytes, 0, headerEnd, StandardCharsets.ISO_8859_1);
+        if (head.indexOf('\r') < 0 && head.indexOf('\n') >= 0) {
+            lineSeparator = "\n";
+        }
+        String[] lines = head.split("\r?\n");
+        requestLine = lines.length > 0 ? lines[0] : "";
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.isEmpty()) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                headers.add(new Header(line, "", line));
+            } else {
+                headers.add(new Header(line.substring(0, colon).trim(), line.substring(colon + 1).trim(), line));
+            }
+        }
+
+        bodyStart = Math.min(bodyOffset, bytes.length);
+        bodyLength = bytes.length - bodyStart;
+    }
+
+    private void replaceBody(byte[] bytes) {
+        raw = bytes;
+        bodyStart = 0;
+        bodyLength = bytes.length;
+        bodyEdited = true;
+        dirty = true;
+    }
+
+    private boolean isFormEncoded() {
+        int index = indexOfHeader("Content-Type");
+        return index >= 0 && headers.get(index).value.toLowerCase().startsWith("application/x-www-form-urlencoded");
+    }
+
+    private String currentQuery() {
+        String target = requestTarget();
+        if (target == null) {
+            return null;
+        }
+        int question = target.indexOf('?');
+        if (question < 0) {
+            return null;
+        }
+        int hash = target.indexOf('#', question);
+        return hash < 0 ? target.substring(question + 1) : target.substring(question + 1, hash);
+    }
+
+    private String requestTarget() {
+        int first = requestLine.indexOf(' ');
+        if (first < 0) {
+            return null;
+        }
+        int last = requestLine.lastIndexOf(' ');
+        return last > first ? requestLine.substring(first + 1, last) : requestLine.substring(first + 1);
+    }
+
+    private void flushQuery() {
+        if (queryParams == null || !queryParams.modified) {
+            return;
+        }
+        String target = requestTarget();
+        if (target != null) {
+            int first = requestLine.indexOf(' ');
+            int last = requestLine.lastIndexOf(' ');
+            String suffix = last > first ? requestLine.substring(last) : "";
+            int question = target.indexOf('?');
+            String path = question < 0 ? target : target.substring(0, question);
+            int hash = question < 0 ? -1 : target.indexOf('#', question);
+            String fragment = hash < 0 ? "" : target.substring(hash);
+            String query = queryParams.render();
+            String newTarget = query.isEmpty() ? path + fragment : path + "?" + query + fragment;
+            requestLine = requestLine.substring(0, first + 1) + newTarget + suffix;
+        }
+        queryParams.modified = false;
+    }
+
+    private void flushBodyParams() {
+        if (bodyParams == null || !bodyParams.modified) {
+            return;
+        }
+        bodyParams.modified = false;
+        replaceBody(bodyParams.render().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void flushCookies() {
+        if (cookies == null || !cookies.modified) {
+            return;
+        }
+        cookies.modified = false;
+        String rendered = cookies.render();
+        int firstIndex = -1;
+        for (int i = headers.size() - 1; i >= 0; i--) {
+            if ("cookie".equalsIgnoreCase(headers.get(i).name)) {
+                firstIndex = i;
+                headers.remove(i);
+            }
+        }
+        if (rendered.isEmpty()) {
+            return;
+        }
+        Header cookieHeader = new Header("Cookie", rendered, null);
+        if (firstIndex >= 0) {
+            headers.add(firstIndex, cookieHeader);
+        } else {
+            headers.add(cookieHeader);
+        }
+    }
+
+    private byte[] toBytes() {
+        flushQuery();
+        flushBodyParams();
+        flushCookies();
+        if (bodyEdited) {
+            syncContentLength();
+        }
+
+        StringBuilder head = new StringBuilder(requestLine.length() + headers.size() * 32);
+        head.append(requestLine).append(lineSeparator);
+        for (Header header : headers) {
+            head.append(header.raw != null ? header.raw : header.name + ": " + header.value).append(lineSeparator);
+        }
+        head.append(lineSeparator);
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(headBytes.length + bodyLength);
+        out.write(headBytes, 0, headBytes.length);
+        out.write(raw, bodyStart, bodyLength);
+        return out.toByteArray();
+    }
+
+    private void syncContentLength() {
+        int index = indexOfHeader("Content-Length");
+        if (index >= 0) {
+            Header header = headers.get(index);
+            String length = String.valueOf(bodyLength);
+            if (!header.value.equals(length)) {
+                header.value = length;
+                header.raw = null;
+            }
+        } else if (bodyLength > 0 && indexOfHeader("Transfer-Encoding") < 0) {
+            headers.add(new Header("Content-Length", String.valueOf(bodyLength), null));
+        }
+    }
+
+    private static final class Header {
+        final String name;
+        String value;
+        /** Original header line, kept until the header is edited. */
+        String raw;
+
+        Header(String name, String value, String raw) {
+            this.name = name;
+            this.value = value;
+            this.raw = raw;
+        }
+    }
+
+    /**
+     * Ordered list of name/value pairs sharing a single delimiter, such as the
+     * query string, a form body or the Cookie header.
+     */
+    final class ParamList {
+        private final char delimiter;
+        private final List<String> names = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<Boolean> bare = new ArrayList<>();
+        private boolean modified;
+
+        private ParamList(char delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        String name(int index) {
+            return names.get(index);
+        }
+
+        String value(int index) {
+            return values.get(index);
+        }
+
+        boolean setValue(int index, String value) {
+            String newValue = value == null ? "" : value;
+            if (values.get(index).equals(newValue) && !bare.get(index)) {
+                return false;
+            }
+            values.set(index, newValue);
+            bare.set(index, false);
+            touch();
+            return true;
+        }
+
+        boolean rename(int index, String name) {
+            if (names.get(index).equals(name)) {
+                return false;
+            }
+            names.set(index, name);
+            touch();
+            return true;
+        }
+
+        void remove(int index) {
+            names.remove(index);
+            values.remove(index);
+            bare.remove(index);
+            touch();
+        }
+
+        void add(String name, String value) {
+            names.add(name);
+            values.add(value == null ? "" : value);
+            bare.add(false);
+            touch();
+        }
+
+        private void touch() {
+            modified = true;
+            dirty = true;
+        }
+
+        private void parse(String text) {
+            int start = 0;
+            int length = text.length();
+            while (start <= length) {
+                int end = text.indexOf(delimiter, start);
+                if (end < 0) {
+                    end = length;
+                }
+                String part = text.substring(start, end);
+                if (delimiter == ';') {
+                    part = part.trim();
+                }
+                if (!part.isEmpty()) {
+                    int equals = part.indexOf('=');
+                    if (equals < 0) {
+                        names.add(part);
+                        values.add("");
+                        bare.add(true);
+                    } else {
+                        String name = part.substring(0, equals);
+                        String value = part.substring(equals + 1);
+                        names.add(delimiter == ';' ? name.trim() : name);
+                        values.add(delimiter == ';' ? value.trim() : value);
+                        bare.add(false);
+                    }
+                }
+                start = end + 1;
+            }
+        }
+
+        private String render() {
+            StringBuilder sb = new StringBuilder();
+            String separator = delimiter == ';' ? "; " : "&";
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    sb.append(separator);
+                }
+                sb.append(names.get(i));
+                if (!bare.get(i)) {
+                    sb.append('=').append(values.get(i));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
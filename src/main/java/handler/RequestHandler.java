@@ -1,43 +1,60 @@
 package handler;
 
 import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.http.RequestOptions;
 import burp.api.montoya.http.handler.*;
-import burp.api.montoya.http.message.params.HttpParameter;
-import burp.api.montoya.http.message.params.HttpParameterType;
-import burp.api.montoya.http.message.params.ParsedHttpParameter;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.core.ToolType;
 import model.ExtensionConfig;
 import model.RequestLogEntry;
 import model.RequestLogModel;
+import model.RoleResult;
+import model.SendOutcome;
+import model.SyntheticStats;
 import model.ReplaceRule;
 import model.UserRole;
-import model.AuthToken;
+import util.ExtensionLogger;
 import model.HighlightRule;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
 
 public class RequestHandler implements HttpHandler {
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 10_000;
+
     private final MontoyaApi api;
+    private final ExtensionLogger log;
     private final RequestLogModel requestLogModel;
     private final ExtensionConfig config;
     private final AtomicInteger requestCounter;
     private List<ReplaceRule> replaceRules;
+    private volatile ReplacePlan replacePlan;
     private List<HighlightRule> highlightRules;
-    private List<UserRole> userRoles;
+    private volatile List<RoleDelta> enabledRoles;
+    private Map<String, RoleDelta> rolesByName;
     private final ConcurrentHashMap<Integer, Pending> pendingByMessageId = new ConcurrentHashMap<>();
-    private final ExecutorService previewExecutor;
-    private final AtomicInteger previewThreadCounter = new AtomicInteger(1);
+    /** Evicts pending records whose response never arrives. */
+    private final ExpiryWheel pendingExpiry;
+    private final AtomicLong expiryStamps = new AtomicLong();
+    /** Logged entries that still have synthetic sends queued or running. */
+    private final ConcurrentHashMap<Integer, Pending> pendingByEntryId = new ConcurrentHashMap<>();
+    private final StaticFileClassifier staticFiles;
+    private final SyntheticRequestScheduler syntheticScheduler;
+    private final SyntheticResponseCache responseCache;
 
     private static class Pending {
         final HttpRequest original;
@@ -50,8 +67,17 @@ public class RequestHandler implements HttpHandler {
         volatile HttpResponse previewModifiedResponse;
         volatile HttpResponse unauthResponse;
         volatile boolean awaitingUnauthResponse;
+        /** Identifies this record in {@link #pendingExpiry}; message ids can be reused. */
+        volatile long expiryStamp;
+        volatile boolean responseExpired;
 
         final String appliedRoles;
+        /** Per-role replays in role matrix mode, otherwise null. */
+        final RoleMatrix matrix;
+        final AtomicInteger outstandingSends = new AtomicInteger();
+        final Map<String, SendOutcome> outcomes = new ConcurrentHashMap<>();
+        volatile boolean cancelled;
+        private final boolean modifiedChange;
 
         Pending(HttpRequest original,
                 HttpRequest modified,
@@ -59,7 +85,8 @@ public class RequestHandler implements HttpHandler {
                 boolean unauthTesting,
                 boolean preview,
                 boolean modifiedSent,
-                String appliedRoles) {
+                String appliedRoles,
+                RoleMatrix matrix) {
             this.original = original;
             this.modified = modified;
             this.unauth = unauth;
@@ -67,35 +94,66 @@ public class RequestHandler implements HttpHandler {
             this.preview = preview;
             this.modifiedSent = modifiedSent;
             this.appliedRoles = appliedRoles;
+            this.matrix = matrix;
             this.awaitingUnauthResponse = unauth != null;
+            // Variants are only produced when the edit buffer reported a change
+            this.modifiedChange = modified != null;
         }
 
         boolean hasModifiedChange() {
-            return modified != null && !modified.toString().equals(original.toString());
+            return modifiedChange;
         }
 
         boolean hasUnauthVariant() {
             return unauth != null;
         }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void recordOutcome(String label, SendOutcome outcome) {
+            outcomes.put(label, outcome);
+        }
+
+        /**
+         * Outcome of each unauth/preview send so far, e.g.
+         * {@code Modified: ok after 1 retry; Unauth: timed out}.
+         */
+        String describeOutcomes() {
+            if (outcomes.isEmpty() && !responseExpired) {
+                return "";
+            }
+            StringJoiner joiner = new StringJoiner("; ");
+            if (responseExpired) {
+                joiner.add("No response");
+            }
+            new TreeMap<>(outcomes).forEach((label, outcome) -> joiner.add(label + ": " + outcome.describe()));
+            return joiner.toString();
+        }
     }
 
-    public RequestHandler(MontoyaApi api, RequestLogModel requestLogModel, ExtensionConfig config) {
+    public RequestHandler(MontoyaApi api, RequestLogModel requestLogModel, ExtensionConfig config,
+            ExtensionLogger log) {
         this.api = api;
+        this.log = log;
         this.requestLogModel = requestLogModel;
         this.config = config;
         this.requestCounter = new AtomicInteger(1);
         this.replaceRules = List.of();
+        this.replacePlan = ReplacePlan.EMPTY;
         this.highlightRules = new ArrayList<>();
-        this.userRoles = List.of();
-        this.previewExecutor = Executors.newCachedThreadPool(r -> {
-            Thread thread = new Thread(r, "idor-auth-preview-" + previewThreadCounter.getAndIncrement());
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.enabledRoles = List.of();
+        this.rolesByName = Map.of();
+        this.staticFiles = new StaticFileClassifier(config);
+        this.syntheticScheduler = new SyntheticRequestScheduler(config);
+        this.responseCache = new SyntheticResponseCache(config);
+        this.pendingExpiry = new ExpiryWheel("auth-mutator-pending-expiry", 1000, this::expirePending);
     }
 
     public void setReplaceRules(List<ReplaceRule> rules) {
         this.replaceRules = List.copyOf(rules);
+        recompileReplacePlan();
     }
 
     public void setHighlightRules(List<model.HighlightRule> rules) {
@@ -106,12 +164,40 @@ public class RequestHandler implements HttpHandler {
     }
 
     public void setUserRoles(List<UserRole> roles) {
-        this.userRoles = List.copyOf(roles);
+        Map<String, RoleDelta> byName = new HashMap<>();
+        List<RoleDelta> enabled = new ArrayList<>();
+        if (roles != null) {
+            for (UserRole role : roles) {
+                if (role == null) {
+                    continue;
+                }
+                RoleDelta delta = RoleDelta.of(role);
+                if (role.getName() != null) {
+                    byName.putIfAbsent(role.getName(), delta);
+                }
+                if (delta.enabled) {
+                    enabled.add(delta);
+                }
+            }
+        }
+        synchronized (this) {
+            this.rolesByName = Map.copyOf(byName);
+            this.enabledRoles = List.copyOf(enabled);
+            // Target roles are resolved at compile time, so role edits invalidate the plan.
+            recompileReplacePlan();
+        }
+    }
+
+    private synchronized void recompileReplacePlan() {
+        ReplacePlan plan = ReplacePlan.compile(replaceRules, rolesByName, log::error);
+        replacePlan = plan;
+        log.info(() -> "Compiled " + plan.rules().size() + " active replace rules into " + plan.steps().size()
+                + " steps");
     }
 
     @Override
     public RequestToBeSentAction handleHttpRequestToBeSent(HttpRequestToBeSent requestToBeSent) {
-        api.logging().logToOutput(">>> REQUEST HANDLER CALLED - URL: " + requestToBeSent.url() + ", enabled: "
+        log.trace(() -> ">>> REQUEST HANDLER CALLED - URL: " + requestToBeSent.url() + ", enabled: "
                 + config.isExtensionEnabled());
 
         // Check if extension is enabled
@@ -125,8 +211,8 @@ public class RequestHandler implements HttpHandler {
         }
 
         // Skip static files if configured
-        if (config.isExcludeStaticFiles() && isStaticFile(requestToBeSent)) {
-            api.logging().logToOutput("Skipping static file: " + requestToBeSent.path());
+        if (config.isExcludeStaticFiles() && staticFiles.isStatic(requestToBeSent)) {
+            log.debug(() -> "Skipping static file: " + requestToBeSent.path());
             return RequestToBeSentAction.continueWith(requestToBeSent);
         }
 
@@ -144,9 +230,6 @@ public class RequestHandler implements HttpHandler {
         }
 
         int messageId = requestToBeSent.messageId();
-        HttpRequest originalSnapshot = HttpRequest.httpRequest(
-                requestToBeSent.httpService(),
-                requestToBeSent.toString());
 
         boolean transformsAllowed = toolEnabled || proxyPreview;
         boolean unauthTestingEnabled = transformsAllowed && config.isUnauthenticatedTesting();
@@ -157,26 +240,22 @@ public class RequestHandler implements HttpHandler {
         HttpRequest modifiedRequest = null;
         List<String> appliedRolesList = new java.util.ArrayList<>();
         if (shouldComputeRules) {
-            HttpRequest candidate = requestToBeSent;
+            // Parse once; roles and rules all edit the same buffer
+            RequestEditBuffer buffer = RequestEditBuffer.of(requestToBeSent);
 
             // Apply User Roles first
-            HttpRequest afterRoles = applyUserRoles(candidate);
-            if (afterRoles != null) {
-                candidate = afterRoles;
-            }
+            boolean changed = applyUserRoles(buffer);
 
             // Apply Replace Rules
-            HttpRequest afterRules = applyReplaceRules(candidate, appliedRolesList);
-            if (afterRules != null) {
-                candidate = afterRules;
-            }
+            changed |= applyReplaceRules(buffer, appliedRolesList);
 
-            if (!candidate.toString().equals(requestToBeSent.toString())) {
-                modifiedRequest = candidate;
+            if (changed) {
+                modifiedRequest = buffer.toRequest();
             }
         }
 
-        boolean modifiedRequestSent = shouldApplyRulesForMain && modifiedRequest != null;
+        boolean hasModifiedChange = modifiedRequest != null;
+        boolean modifiedRequestSent = shouldApplyRulesForMain && hasModifiedChange;
 
         HttpRequest unauthRequest = null;
         if (unauthTestingEnabled) {
@@ -184,14 +263,38 @@ public class RequestHandler implements HttpHandler {
             if (config.isApplyRulesToUnauthenticatedRequest() && modifiedRequest != null) {
                 baseForUnauth = modifiedRequest;
             } else {
-                baseForUnauth = originalSnapshot;
+                // Safe to read directly: the buffer copies on the first edit
+                baseForUnauth = requestToBeSent;
             }
-            HttpRequest stripped = stripCookies(baseForUnauth);
-            if (!stripped.toString().equals(baseForUnauth.toString())) {
-                unauthRequest = stripped;
+            RequestEditBuffer unauthBuffer = RequestEditBuffer.of(baseForUnauth);
+            if (stripCookies(unauthBuffer)) {
+                unauthRequest = unauthBuffer.toRequest();
             }
         }
 
+        boolean wantsMatrix = transformsAllowed && config.isRoleMatrix() && !enabledRoles.isEmpty();
+        boolean shouldTrack = transformsAllowed
+                && (hasModifiedChange || unauthRequest != null || wantsMatrix || proxyPreview);
+
+        log.debug(() -> "Request handler - messageId: " + messageId +
+                ", toolEnabled: " + toolEnabled +
+                ", proxyPreview: " + proxyPreview +
+                ", shouldTrack: " + shouldTrack +
+                ", modifiedRequestSent: " + modifiedRequestSent +
+                ", hasModifiedChange: " + hasModifiedChange);
+
+        if (!shouldTrack) {
+            log.trace(() -> "  NOT tracked - transformsAllowed: " + transformsAllowed);
+            return RequestToBeSentAction.continueWith(requestToBeSent);
+        }
+
+        // Only tracked requests need a copy that outlives this call; it shares
+        // the request bytes rather than re-parsing them from text
+        HttpRequest originalSnapshot = HttpRequest.httpRequest(
+                requestToBeSent.httpService(),
+                requestToBeSent.toByteArray());
+        RoleMatrix matrix = wantsMatrix ? buildRoleMatrix(originalSnapshot) : null;
+
         Pending pending = new Pending(
                 originalSnapshot,
                 modifiedRequest,
@@ -199,19 +302,10 @@ public class RequestHandler implements HttpHandler {
                 unauthTestingEnabled,
                 proxyPreview,
                 modifiedRequestSent,
-                String.join(", ", appliedRolesList));
+                String.join(", ", appliedRolesList),
+                matrix);
 
-        boolean shouldTrack = transformsAllowed
-                && (pending.hasModifiedChange() || pending.hasUnauthVariant() || proxyPreview);
-
-        api.logging().logToOutput("Request handler - messageId: " + messageId +
-                ", toolEnabled: " + toolEnabled +
-                ", proxyPreview: " + proxyPreview +
-                ", shouldTrack: " + shouldTrack +
-                ", modifiedRequestSent: " + modifiedRequestSent +
-                ", hasModifiedChange: " + pending.hasModifiedChange());
-
-        if (proxyPreview && (pending.hasModifiedChange() || pending.hasUnauthVariant())) {
+        if (proxyPreview && (pending.hasModifiedChange() || pending.hasUnauthVariant() || matrix != null)) {
             int id = requestCounter.getAndIncrement();
             RequestLogEntry entry = new RequestLogEntry(
                     id,
@@ -225,23 +319,29 @@ public class RequestHandler implements HttpHandler {
                     config.isUnauthenticatedTesting(),
                     "",
                     pending.appliedRoles);
-            requestLogModel.addEntry(entry);
             pending.tableEntryId = id;
+            requestLogModel.addEntry(withSyntheticResults(entry, pending));
+            syncEntryLater(pending);
+            trackEntry(pending);
+            log.info(() -> "Logged preview #" + id + " " + entry.getMethod() + " " + entry.getUrl());
         }
 
-        if (shouldTrack) {
-            pendingByMessageId.put(messageId, pending);
-            api.logging().logToOutput("  Added to pending map - messageId: " + messageId);
-        } else {
-            api.logging().logToOutput("  NOT tracked - transformsAllowed: " + transformsAllowed);
-        }
+        pending.expiryStamp = expiryStamps.incrementAndGet();
+        pendingByMessageId.put(messageId, pending);
+        pendingExpiry.schedule(messageId, pending.expiryStamp,
+                TimeUnit.SECONDS.toMillis(config.getPendingResponseTtlSeconds()));
+        log.trace(() -> "  Added to pending map - messageId: " + messageId);
 
         if (pending.hasUnauthVariant()) {
-            scheduleSyntheticRequest(pending, unauthRequest, ResponseVariant.UNAUTH);
+            scheduleSyntheticRequest(pending, unauthRequest, ResponseVariant.UNAUTH, toolType);
         }
 
         if (proxyPreview && pending.hasModifiedChange()) {
-            scheduleSyntheticRequest(pending, modifiedRequest, ResponseVariant.MODIFIED);
+            scheduleSyntheticRequest(pending, modifiedRequest, ResponseVariant.MODIFIED, toolType);
+        }
+
+        if (matrix != null) {
+            scheduleRoleMatrix(pending, toolType);
         }
 
         if (proxyPreview) {
@@ -257,12 +357,17 @@ public class RequestHandler implements HttpHandler {
 
     public void shutdown() {
         replaceRules = List.of();
-        userRoles = List.of();
+        enabledRoles = List.of();
+        rolesByName = Map.of();
+        replacePlan = ReplacePlan.EMPTY;
+        pendingExpiry.shutdown();
         pendingByMessageId.clear();
-        previewExecutor.shutdownNow();
+        pendingByEntryId.clear();
+        responseCache.clear();
+        staticFiles.clearLearned();
         try {
-            if (!previewExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                api.logging().logToOutput("Preview executor did not terminate cleanly within timeout.");
+            if (!syntheticScheduler.shutdown(5, TimeUnit.SECONDS)) {
+                log.info(() -> "Synthetic request workers did not terminate cleanly within timeout.");
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -271,152 +376,442 @@ public class RequestHandler implements HttpHandler {
 
     @Override
     public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived responseReceived) {
-        api.logging().logToOutput(">>> RESPONSE HANDLER CALLED - URL: " + responseReceived.initiatingRequest().url()
-                + ", status: " + responseReceived.statusCode());
-
-        // Check if extension is enabled
-        if (!config.isExtensionEnabled()) {
+        // The request phase already made the enabled, scope, static-file and tool
+        // decisions for this message; only messages it chose to track are pending.
+        int messageId = responseReceived.messageId();
+        Pending pending = pendingByMessageId.remove(messageId);
+        if (pending == null) {
             return ResponseReceivedAction.continueWith(responseReceived);
         }
 
-        // Check scope if enabled
-        if (config.isOnlyInScope() && !api.scope().isInScope(responseReceived.initiatingRequest().url())) {
-            return ResponseReceivedAction.continueWith(responseReceived);
-        }
+        log.trace(() -> ">>> RESPONSE HANDLER CALLED - URL: " + responseReceived.initiatingRequest().url()
+                + ", status: " + responseReceived.statusCode() + ", messageId: " + messageId);
 
-        // Skip static files if configured
-        if (config.isExcludeStaticFiles() && isStaticFileResponse(responseReceived)) {
-            return ResponseReceivedAction.continueWith(responseReceived);
+        // Extensionless assets can only be recognised once their Content-Type is known.
+        // This record was already sent or shown, so it is still finalized below; the
+        // URL is remembered so the request phase skips it from now on.
+        if (config.isExcludeStaticFiles() && config.isStaticContentTypeCheck()) {
+            staticFiles.learn(pending.original, responseReceived.headerValue("Content-Type"));
         }
 
-        // Respect per-tool settings
-        ToolType toolType = responseReceived.toolSource() != null ? responseReceived.toolSource().toolType() : null;
-        boolean toolEnabled = config.isToolEnabled(toolType);
-        boolean proxyPreview = (toolType == ToolType.PROXY) && !toolEnabled && config.isPreviewInProxy();
-
-        int messageId = responseReceived.messageId();
-        Pending pending = pendingByMessageId.remove(messageId);
-
-        api.logging().logToOutput("Response handler - messageId: " + messageId + ", pending: "
-                + (pending != null ? "found" : "NOT FOUND"));
-
-        if (pending != null && (toolEnabled || proxyPreview)) {
-            HttpResponse httpResponse = responseReceived;
-            if (pending.preview) {
-                if (pending.tableEntryId != null && pending.tableEntryId > 0) {
-                    int entryId = pending.tableEntryId;
-                    HttpResponse modifiedResponse = pending.previewModifiedResponse;
-                    HttpResponse unauthResponse = pending.unauthResponse;
-                    javax.swing.SwingUtilities.invokeLater(() -> {
-                        RequestLogEntry existing = requestLogModel.findById(entryId);
-                        if (existing == null) {
-                            return;
-                        }
-                        RequestLogEntry updated = new RequestLogEntry(
-                                entryId,
-                                pending.original,
-                                pending.hasModifiedChange() ? pending.modified : null,
-                                pending.hasUnauthVariant() ? pending.unauth : null,
-                                httpResponse,
-                                modifiedResponse != null ? modifiedResponse : existing.getModifiedResponse(),
-                                unauthResponse != null ? unauthResponse : existing.getUnauthResponse(),
-                                false,
-                                pending.unauthTesting,
-                                existing.getNotes(),
-                                pending.appliedRoles);
-                        requestLogModel.replaceById(entryId, updated);
-                    });
-                }
-            } else {
-                boolean shouldLog = pending.hasModifiedChange() || pending.hasUnauthVariant();
-                if (shouldLog) {
-                    int id = requestCounter.getAndIncrement();
-                    // When modified request was sent, the response we receive is the modified
-                    // response
-                    // When original request was sent, the response we receive is the original
-                    // response
-                    HttpResponse originalResponse = pending.modifiedSent ? null : httpResponse;
-                    HttpResponse modifiedResponse = pending.modifiedSent ? httpResponse : null;
-
-                    api.logging().logToOutput("Response received - modifiedSent: " + pending.modifiedSent +
-                            ", hasModifiedChange: " + pending.hasModifiedChange() +
-                            ", originalResponse: " + (originalResponse != null ? "present" : "null") +
-                            ", modifiedResponse: " + (modifiedResponse != null ? "present" : "null") +
-                            ", response status: " + (httpResponse != null ? httpResponse.statusCode() : "null") +
-                            ", response body length: " + (httpResponse != null ? httpResponse.body().length() : 0));
-
-                    if (httpResponse != null && httpResponse.statusCode() == 202) {
-                        api.logging().logToOutput("  *** 202 RESPONSE DETECTED ***");
-                        api.logging().logToOutput("  httpResponse object: " + httpResponse);
-                        api.logging().logToOutput("  Will be stored as "
-                                + (pending.modifiedSent ? "MODIFIED" : "ORIGINAL") + " response");
+        HttpResponse httpResponse = responseReceived;
+        if (pending.preview) {
+            if (pending.tableEntryId != null && pending.tableEntryId > 0) {
+                int entryId = pending.tableEntryId;
+                HttpResponse modifiedResponse = pending.previewModifiedResponse;
+                HttpResponse unauthResponse = pending.unauthResponse;
+                javax.swing.SwingUtilities.invokeLater(() -> {
+                    RequestLogEntry existing = requestLogModel.findById(entryId);
+                    if (existing == null) {
+                        return;
                     }
-
-                    RequestLogEntry entry = new RequestLogEntry(
-                            id,
-                            pending.original,
-                            pending.hasModifiedChange() ? pending.modified : null,
-                            pending.hasUnauthVariant() ? pending.unauth : null,
-                            originalResponse,
-                            modifiedResponse,
-                            pending.unauthResponse,
-                            pending.modifiedSent,
+                    // The entry was created from this pending record, so its requests
+                    // and modification flag are reused as is
+                    RequestLogEntry updated = existing.withResponses(
+                            httpResponse,
+                            modifiedResponse != null ? modifiedResponse : existing.getModifiedResponse(),
+                            unauthResponse != null ? unauthResponse : existing.getUnauthResponse(),
                             pending.unauthTesting,
-                            "",
                             pending.appliedRoles);
-                    requestLogModel.addEntry(entry);
-                    pending.tableEntryId = id;
-
-                    if (pending.awaitingUnauthResponse && pending.unauthResponse != null) {
-                        pending.awaitingUnauthResponse = false;
-                    }
-                }
+                    requestLogModel.replaceById(entryId, updated);
+                });
             }
+        } else {
+            logResponse(pending, httpResponse);
         }
 
         return ResponseReceivedAction.continueWith(responseReceived);
     }
 
-    private void scheduleSyntheticRequest(Pending pending, HttpRequest request, ResponseVariant variant) {
+    /**
+     * Logs a tracked request once its response arrived, or with no response
+     * when it expired; {@code httpResponse} is null in that case.
+     */
+    private void logResponse(Pending pending, HttpResponse httpResponse) {
+        boolean shouldLog = pending.hasModifiedChange() || pending.hasUnauthVariant() || pending.matrix != null;
+        if (shouldLog) {
+            int id = requestCounter.getAndIncrement();
+            // When modified request was sent, the response we receive is the modified
+            // response
+            // When original request was sent, the response we receive is the original
+            // response
+            HttpResponse originalResponse = pending.modifiedSent ? null : httpResponse;
+            HttpResponse modifiedResponse = pending.modifiedSent ? httpResponse : null;
+
+            log.debug(() -> "Response received - modifiedSent: " + pending.modifiedSent +
+                    ", hasModifiedChange: " + pending.hasModifiedChange() +
+                    ", originalResponse: " + (originalResponse != null ? "present" : "null") +
+                    ", modifiedResponse: " + (modifiedResponse != null ? "present" : "null") +
+                    ", response status: " + (httpResponse != null ? httpResponse.statusCode() : "null") +
+                    ", response body length: " + (httpResponse != null ? httpResponse.body().length() : 0));
+
+            if (httpResponse != null && httpResponse.statusCode() == 202) {
+                log.trace(() -> "  *** 202 RESPONSE DETECTED ***");
+                log.trace(() -> "  httpResponse object: " + httpResponse);
+                log.trace(() -> "  Will be stored as "
+                        + (pending.modifiedSent ? "MODIFIED" : "ORIGINAL") + " response");
+            }
+
+            RequestLogEntry entry = new RequestLogEntry(
+                    id,
+                    pending.original,
+                    pending.hasModifiedChange() ? pending.modified : null,
+                    pending.hasUnauthVariant() ? pending.unauth : null,
+                    originalResponse,
+                    modifiedResponse,
+                    pending.unauthResponse,
+                    pending.modifiedSent,
+                    pending.unauthTesting,
+                    "",
+                    pending.appliedRoles);
+            pending.tableEntryId = id;
+            requestLogModel.addEntry(withSyntheticResults(entry, pending));
+            syncEntryLater(pending);
+            trackEntry(pending);
+            log.info(() -> "Logged #" + id + " " + entry.getMethod() + " " + entry.getUrl());
+
+            if (pending.awaitingUnauthResponse && pending.unauthResponse != null) {
+                pending.awaitingUnauthResponse = false;
+            }
+        }
+    }
+
+    /**
+     * Called by {@link #pendingExpiry} when a tracked request has waited longer
+     * than the response TTL. Logs it without a response, or marks an existing
+     * preview entry, so it is not silently lost.
+     */
+    private boolean expirePending(int messageId, long stamp) {
+        Pending pending = pendingByMessageId.get(messageId);
+        if (pending == null || pending.expiryStamp != stamp || !pendingByMessageId.remove(messageId, pending)) {
+            return false;
+        }
+        pending.responseExpired = true;
+        log.debug(() -> "No response for message " + messageId + " after "
+                + config.getPendingResponseTtlSeconds() + " s: " + pending.original.url());
+        if (pending.preview) {
+            syncEntryLater(pending);
+        } else {
+            logResponse(pending, null);
+        }
+        return true;
+    }
+
+    private void scheduleSyntheticRequest(Pending pending, HttpRequest request, ResponseVariant variant,
+            ToolType tool) {
+        sendSynthetic(pending, request, tool, variant == ResponseVariant.UNAUTH, (response, outcome) -> {
+            pending.recordOutcome(variant == ResponseVariant.UNAUTH ? "Unauth" : "Modified", outcome);
+            deliverSyntheticResponse(pending, variant, response);
+            syncEntryLater(pending);
+        });
+    }
+
+    /**
+     * Sends an extension-originated request for {@code pending} through the
+     * scheduler and hands the response, or null when the send did not
+     * succeed, to {@code onResult} together with how it ended. Cacheable
+     * requests share the response of an identical request sent shortly before.
+     */
+    private void sendSynthetic(Pending pending, HttpRequest request, ToolType tool, boolean cacheable,
+            BiConsumer<HttpResponse, SendOutcome> onResult) {
         if (request == null) {
             return;
         }
-        try {
-            previewExecutor.submit(() -> {
-                try {
-                    var requestResponse = api.http().sendRequest(request);
-                    HttpResponse response = requestResponse != null ? requestResponse.response() : null;
-                    if (response == null) {
-                        markVariantComplete(pending, variant);
-                        return;
-                    }
 
-                    if (variant == ResponseVariant.MODIFIED) {
-                        pending.previewModifiedResponse = response;
-                        // pending.awaitingModifiedPreviewResponse = false; // logic removed
-                    } else {
-                        pending.unauthResponse = response;
-                        pending.awaitingUnauthResponse = false;
-                    }
+        pending.outstandingSends.incrementAndGet();
+        BiConsumer<HttpResponse, SendOutcome> finish = (response, outcome) -> {
+            try {
+                onResult.accept(response, outcome);
+            } finally {
+                Integer entryId = pending.tableEntryId;
+                if (pending.outstandingSends.decrementAndGet() == 0 && entryId != null) {
+                    pendingByEntryId.remove(entryId, pending);
+                }
+            }
+        };
 
-                    Integer entryId = pending.tableEntryId;
-                    if (entryId != null && entryId > 0) {
-                        javax.swing.SwingUtilities.invokeLater(() -> {
-                            updateEntryResponses(
-                                    pending,
-                                    variant == ResponseVariant.MODIFIED ? response : null,
-                                    variant == ResponseVariant.UNAUTH ? response : null);
-                        });
-                    }
-                } catch (Exception ex) {
-                    api.logging().logToError("Synthetic send failed: " + ex.getMessage());
-                    markVariantComplete(pending, variant);
+        String cacheKey = null;
+        CompletableFuture<HttpResponse> shared = null;
+        if (cacheable && responseCache.isEnabled()) {
+            cacheKey = SyntheticResponseCache.keyOf(request);
+            shared = new CompletableFuture<>();
+            CompletableFuture<HttpResponse> existing = responseCache.claim(cacheKey, shared);
+            if (existing != null) {
+                log.trace(() -> "Reusing unauth response for duplicate request: " + request.url());
+                existing.thenAccept(response -> finish.accept(response, new SendOutcome(
+                        response != null ? SendOutcome.Status.REUSED : SendOutcome.Status.FAILED, 0)));
+                return;
+            }
+        }
+
+        String key = cacheKey;
+        CompletableFuture<HttpResponse> owner = shared;
+        new SyntheticSend(pending, request, tool, (response, outcome) -> {
+            if (owner != null) {
+                if (response != null) {
+                    responseCache.completed(key, owner);
+                } else {
+                    responseCache.evict(key, owner);
                 }
+                owner.complete(response);
+            }
+            finish.accept(response, outcome);
+        }).start();
+    }
+
+    /**
+     * One synthetic request and its retries. Each attempt is bounded by the
+     * configured response timeout. Connection failures are retried with
+     * jittered exponential backoff without holding a worker or a queue slot
+     * while waiting; timeouts are not retried.
+     */
+    private final class SyntheticSend {
+        private final Pending pending;
+        private final HttpRequest request;
+        private final ToolType tool;
+        private final String host;
+        private final BiConsumer<HttpResponse, SendOutcome> onDone;
+        private volatile int attempts;
+
+        SyntheticSend(Pending pending, HttpRequest request, ToolType tool,
+                BiConsumer<HttpResponse, SendOutcome> onDone) {
+            this.pending = pending;
+            this.request = request;
+            this.tool = tool;
+            this.host = request.httpService() != null ? request.httpService().host() : "";
+            this.onDone = onDone;
+        }
+
+        void start() {
+            syntheticScheduler.submit(host, tool, pending::isCancelled, this::attempt, this::dropped);
+        }
+
+        private void attempt() {
+            int attempt = ++attempts;
+            long timeoutMillis = config.getSyntheticTimeoutMillis();
+            long started = System.nanoTime();
+            HttpResponse response = null;
+            try {
+                var requestResponse = api.http().sendRequest(request,
+                        RequestOptions.requestOptions().withResponseTimeout(timeoutMillis));
+                response = requestResponse != null ? requestResponse.response() : null;
+            } catch (Exception ex) {
+                log.debug(() -> "Synthetic send failed: " + request.url() + ": " + ex.getMessage());
+            }
+            syntheticScheduler.recordLatency(System.nanoTime() - started,
+                    response != null ? response.statusCode() : -1);
+            if (response != null) {
+                onDone.accept(response, new SendOutcome(SendOutcome.Status.SUCCESS, attempt));
+                return;
+            }
+
+            if (pending.isCancelled()) {
+                // The entry went away mid-attempt; not a failure worth reporting
+                log.debug(() -> "Synthetic request " + SendOutcome.Status.CANCELLED + ": " + request.url());
+                onDone.accept(null, new SendOutcome(SendOutcome.Status.CANCELLED, attempt));
+                return;
+            }
+
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (elapsedMillis >= timeoutMillis) {
+                log.debug(() -> "Synthetic send timed out after " + elapsedMillis + " ms: " + request.url());
+                onDone.accept(null, new SendOutcome(SendOutcome.Status.TIMEOUT, attempt));
+                return;
+            }
+            if (attempt > config.getSyntheticMaxRetries()) {
+                log.error("Synthetic send failed after " + attempt + " attempt(s): " + request.url());
+                onDone.accept(null, new SendOutcome(SendOutcome.Status.FAILED, attempt));
+                return;
+            }
+            long delay = backoffMillis(attempt);
+            log.debug(() -> "Retrying synthetic send in " + delay + " ms: " + request.url());
+            syntheticScheduler.submitAfter(delay, host, tool, pending::isCancelled, this::attempt, this::dropped);
+        }
+
+        private void dropped() {
+            SendOutcome.Status status = pending.isCancelled()
+                    ? SendOutcome.Status.CANCELLED
+                    : SendOutcome.Status.DROPPED;
+            log.debug(() -> "Synthetic request " + status + ": " + request.url());
+            onDone.accept(null, new SendOutcome(status, attempts));
+        }
+
+        /** Random delay between half the base and base * 2^(attempt-1), capped. */
+        private long backoffMillis(int attempt) {
+            long base = Math.max(1, config.getSyntheticRetryBackoffMillis());
+            long ceiling = Math.min(MAX_RETRY_BACKOFF_MILLIS, base << Math.min(attempt - 1, 16));
+            return ThreadLocalRandom.current().nextLong(Math.min(base / 2, ceiling), ceiling + 1);
+        }
+    }
+
+    /**
+     * Builds one replay per enabled role, each carrying only that role's
+     * headers and cookies, plus a replay with no credentials at all.
+     * <p>
+     * Every cell starts from the request with its Cookie and Authorization
+     * headers and every header any enabled role defines removed, so a role
+     * that authenticates differently is not replayed with the browsing
+     * user's credentials still attached.
+     */
+    private RoleMatrix buildRoleMatrix(HttpRequest original) {
+        List<RoleDelta> roles = enabledRoles;
+        if (roles.isEmpty()) {
+            return null;
+        }
+        Set<String> credentialHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        credentialHeaders.add("Cookie");
+        credentialHeaders.add("Authorization");
+        for (RoleDelta role : roles) {
+            role.collectHeaderNames(credentialHeaders);
+        }
+
+        List<String> names = new ArrayList<>(roles.size() + 1);
+        List<HttpRequest> requests = new ArrayList<>(roles.size() + 1);
+        for (RoleDelta role : roles) {
+            RequestEditBuffer buffer = RequestEditBuffer.of(original);
+            stripHeaders(buffer, credentialHeaders);
+            role.applyTo(buffer);
+            names.add(role.name);
+            requests.add(buffer.toRequest());
+        }
+        RequestEditBuffer unauthBuffer = RequestEditBuffer.of(original);
+        stripHeaders(unauthBuffer, credentialHeaders);
+        names.add(RoleResult.UNAUTHENTICATED);
+        requests.add(unauthBuffer.toRequest());
+        return new RoleMatrix(names, requests);
+    }
+
+    private void scheduleRoleMatrix(Pending pending, ToolType tool) {
+        RoleMatrix matrix = pending.matrix;
+        for (int i = 0; i < matrix.size(); i++) {
+            int cell = i;
+            boolean unauth = RoleResult.UNAUTHENTICATED.equals(matrix.role(cell));
+            sendSynthetic(pending, matrix.request(cell), tool, unauth, (response, outcome) -> {
+                matrix.complete(cell, response, outcome);
+                syncEntryLater(pending);
             });
-        } catch (RejectedExecutionException reject) {
-            api.logging().logToError("Preview executor rejected task: " + reject.getMessage());
+        }
+    }
+
+    /**
+     * Adds the role matrix results and send outcomes collected so far to a
+     * logged entry.
+     */
+    private static RequestLogEntry withSyntheticResults(RequestLogEntry entry, Pending pending) {
+        RequestLogEntry result = pending.matrix != null ? entry.withRoleResults(pending.matrix.snapshot()) : entry;
+        String notes = pending.describeOutcomes();
+        return notes.isEmpty() ? result : result.withNotes(notes);
+    }
+
+    /**
+     * Copies the current matrix results and send outcomes into the logged
+     * entry. The snapshot is taken on the EDT after the entry was added, so
+     * results that arrive around the time the entry is created are not lost.
+     */
+    private void syncEntryLater(Pending pending) {
+        Integer entryId = pending.tableEntryId;
+        if (entryId == null) {
+            return;
+        }
+        requestLogModel.updateById(entryId, existing -> withSyntheticResults(existing, pending));
+    }
+
+    /**
+     * Registers a logged pending record so evicting its entry cancels the
+     * synthetic sends still queued for it.
+     */
+    private void trackEntry(Pending pending) {
+        Integer entryId = pending.tableEntryId;
+        if (entryId == null) {
+            return;
+        }
+        pendingByEntryId.put(entryId, pending);
+        // The last send may have finished before the entry id was known
+        if (pending.outstandingSends.get() == 0) {
+            pendingByEntryId.remove(entryId, pending);
+        }
+    }
+
+    /**
+     * Cancels queued synthetic sends whose log entries were evicted.
+     */
+    public void onEntriesEvicted(List<Integer> entryIds) {
+        boolean any = false;
+        for (Integer entryId : entryIds) {
+            Pending pending = pendingByEntryId.remove(entryId);
+            if (pending != null) {
+                pending.cancelled = true;
+                any = true;
+            }
+        }
+        if (any) {
+            syntheticScheduler.purgeCancelled();
+        }
+    }
+
+    /**
+     * Applies settings that affect work already queued: switching the
+     * extension off cancels every queued synthetic send.
+     */
+    public void onConfigChanged() {
+        if (!config.isExtensionEnabled()) {
+            syntheticScheduler.cancelQueued();
+        }
+    }
+
+    /**
+     * Column names of the role matrix: the enabled roles followed by the
+     * unauthenticated replay.
+     */
+    public List<String> getMatrixRoleNames() {
+        List<String> names = new ArrayList<>();
+        for (RoleDelta role : enabledRoles) {
+            names.add(role.name);
+        }
+        names.add(RoleResult.UNAUTHENTICATED);
+        return names;
+    }
+
+    private void deliverSyntheticResponse(Pending pending, ResponseVariant variant, HttpResponse response) {
+        if (response == null) {
             markVariantComplete(pending, variant);
+            return;
         }
+
+        if (variant == ResponseVariant.MODIFIED) {
+            pending.previewModifiedResponse = response;
+        } else {
+            pending.unauthResponse = response;
+            pending.awaitingUnauthResponse = false;
+        }
+
+        Integer entryId = pending.tableEntryId;
+        if (entryId != null && entryId > 0) {
+            javax.swing.SwingUtilities.invokeLater(() -> {
+                updateEntryResponses(
+                        pending,
+                        variant == ResponseVariant.MODIFIED ? response : null,
+                        variant == ResponseVariant.UNAUTH ? response : null);
+            });
+        }
+    }
+
+    /**
+     * Queue depth, in-flight count and drop counters of extension-originated
+     * requests, plus the requests still waiting for their response.
+     */
+    public SyntheticStats getSyntheticStats() {
+        return syntheticScheduler.stats()
+                .withCacheHits(responseCache.hits())
+                .withPendingResponses(pendingByMessageId.size(), pendingExpiry.expiredTotal(),
+                        pendingExpiry.expiredLastMinute());
+    }
+
+    /**
+     * True when the running JVM can send synthetic requests on virtual threads.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return SyntheticRequestScheduler.virtualThreadsAvailable();
     }
 
     private void updateEntryResponses(Pending pending, HttpResponse newModifiedResponse,
@@ -430,19 +825,11 @@ public class RequestHandler implements HttpHandler {
             return;
         }
 
-        RequestLogEntry updated = new RequestLogEntry(
-                entryId,
-                existing.getOriginalRequest() != null ? existing.getOriginalRequest() : pending.original,
-                existing.getModifiedRequest() != null ? existing.getModifiedRequest()
-                        : (pending.hasModifiedChange() ? pending.modified : null),
-                existing.getUnauthRequest() != null ? existing.getUnauthRequest()
-                        : (pending.hasUnauthVariant() ? pending.unauth : null),
+        RequestLogEntry updated = existing.withResponses(
                 existing.getOriginalResponse(),
                 newModifiedResponse != null ? newModifiedResponse : existing.getModifiedResponse(),
                 newUnauthResponse != null ? newUnauthResponse : existing.getUnauthResponse(),
-                existing.wasModifiedRequestSent(),
                 existing.isUnauthenticatedTesting() || pending.unauthTesting,
-                existing.getNotes(),
                 pending.appliedRoles);
         requestLogModel.replaceById(entryId, updated);
     }
@@ -460,871 +847,424 @@ public class RequestHandler implements HttpHandler {
         UNAUTH
     }
 
-    private HttpRequest stripCookies(HttpRequest request) {
-        HttpRequest current = request;
+    private boolean stripCookies(RequestEditBuffer buffer) {
         boolean changed = false;
-
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (param.type() == HttpParameterType.COOKIE) {
-                HttpParameter cookieParam = HttpParameter.cookieParameter(param.name(), param.value());
-                current = current.withRemovedParameters(cookieParam);
+        for (int i = buffer.headerCount() - 1; i >= 0; i--) {
+            if ("cookie".equalsIgnoreCase(buffer.headerName(i))) {
+                buffer.removeHeader(i);
                 changed = true;
             }
         }
+        return changed;
+    }
 
-        for (var header : request.headers()) {
-            if ("cookie".equalsIgnoreCase(header.name())) {
-                current = current.withRemovedHeader(header);
-                changed = true;
+    private static void stripHeaders(RequestEditBuffer buffer, Set<String> names) {
+        for (int i = buffer.headerCount() - 1; i >= 0; i--) {
+            if (names.contains(buffer.headerName(i))) {
+                buffer.removeHeader(i);
             }
         }
-
-        return changed ? current : request;
     }
 
-    private HttpRequest applyUserRoles(HttpRequest request) {
-        HttpRequest current = request;
+    private boolean applyUserRoles(RequestEditBuffer buffer) {
         boolean modified = false;
 
-        for (UserRole role : userRoles) {
-            if (!role.isEnabled()) {
-                continue;
-            }
-
-            api.logging().logToOutput("  Applying Role: " + role.getName());
-
-            for (AuthToken token : role.getTokens()) {
-                if (token.getType() == AuthToken.Type.HEADER) {
-                    current = current.withUpdatedHeader(token.getName(), token.getValue());
-                    // If header didn't exist, withUpdatedHeader might not add it?
-                    // Verify Montoya API behavior: "Updates the value of the header with the
-                    // specified name. If the header does not exist, it is added."
-                    // Actually, let's check standard behavior. usually updated -> replaces. added
-                    // -> adds.
-                    // If it doesn't exist, updated usually adds. But let's be safe.
-                    // Montoya API: HttpRequest.withUpdatedHeader(name, value) "Returns a new
-                    // HttpRequest with the header with the specified name updated to the specified
-                    // value. If the header is not present, it is added."
-                    // Perfect.
-                    modified = true;
-                } else if (token.getType() == AuthToken.Type.COOKIE) {
-                    // Start by removing existing cookie with same name to ensure clean state?
-                    // Or just use withUpdatedParameters if it's a parameter.
-                    // Cookies are parameters in Montoya.
-                    HttpParameter cookie = HttpParameter.cookieParameter(token.getName(), token.getValue());
-                    current = current.withUpdatedParameters(cookie);
-                    // "Returns a new HttpRequest with the specified parameter updated. If the
-                    // parameter is not present, it is added."
-                    modified = true;
-                }
-            }
+        for (RoleDelta role : enabledRoles) {
+            log.debug(() -> "  Applying Role: " + role.name);
+            modified |= role.applyTo(buffer);
         }
-        return modified ? current : null;
+        return modified;
     }
 
-    private HttpRequest applyReplaceRules(HttpRequest request, List<String> appliedRolesCollector) {
-        HttpRequest modifiedRequest = request;
-        boolean wasModified = false;
+    private boolean applyReplaceRules(RequestEditBuffer buffer, List<String> appliedRolesCollector) {
+        ReplacePlan plan = replacePlan;
+        List<ReplacePlan.CompiledRule> rules = plan.rules();
+        boolean[] ruleModified = new boolean[rules.size()];
+        // Scope is decided on the request as it arrived, before any edits
+        boolean[] activeRules = plan.candidateRules(buffer.source());
 
-        api.logging().logToOutput("Processing request to: " + request.url() + " | Rules count: " + replaceRules.size());
+        log.debug(() -> "Processing request to: " + buffer.source().url() + " | Rules count: "
+                + rules.size());
 
-        for (ReplaceRule rule : replaceRules) {
-            if (!rule.isEnabled()) {
-                api.logging().logToOutput("  Skipping disabled rule: " + rule.getName());
-                continue;
-            }
-            if (!rule.hasWorkToDo()) {
-                api.logging().logToOutput("  Rule has no operations and no target role: " + rule.getName());
+        for (ReplacePlan.Step step : plan.steps()) {
+            if (activeRules != null && step.batch == null && !activeRules[step.ruleIndex]) {
                 continue;
             }
-
             try {
-                api.logging().logToOutput(
-                        "  Applying rule: " + rule.getName() + " (" + rule.getOperations().size() + " operations)");
-                HttpRequest newRequest = applyRule(modifiedRequest, rule, appliedRolesCollector);
-                if (newRequest != null && !newRequest.toString().equals(modifiedRequest.toString())) {
-                    modifiedRequest = newRequest;
-                    wasModified = true;
-                    api.logging().logToOutput("  ✓ Rule applied successfully: " + rule.getName());
-                } else {
-                    api.logging().logToOutput("  ✗ Rule did not modify request: " + rule.getName());
+                switch (step.kind) {
+                    case ROLE -> {
+                        ReplacePlan.CompiledRule rule = rules.get(step.ruleIndex);
+                        if (rule.targetRole.applyTo(buffer)) {
+                            ruleModified[step.ruleIndex] = true;
+                            appliedRolesCollector.add(rule.targetRoleName);
+                            log.debug(() -> "    ✓ Applied Role: " + rule.targetRoleName);
+                        }
+                    }
+                    case OPERATION -> {
+                        if (applyOperation(buffer, step.operation)) {
+                            ruleModified[step.ruleIndex] = true;
+                            log.trace(() -> "    ✓ Operation applied: " + step.operation.description);
+                        } else {
+                            log.trace(() -> "    ✗ Operation had no effect: " + step.operation.description);
+                        }
+                    }
+                    case LITERAL_BATCH -> applyLiteralBatch(buffer, step.batch, activeRules, ruleModified);
                 }
             } catch (Exception e) {
-                api.logging().logToError("Error applying rule '" + rule.getName() + "': " + e.getMessage());
+                log.error("Error applying rule '" + describeStepRules(rules, step) + "': "
+                        + e.getMessage());
             }
         }
 
-        api.logging().logToOutput("Request processing complete. Was modified: " + wasModified);
-        return wasModified ? modifiedRequest : null;
-    }
-
-    private HttpRequest applyRule(HttpRequest request, ReplaceRule rule, List<String> appliedRolesCollector) {
-        HttpRequest current = request;
-        boolean modified = false;
-
-        if (rule.getTargetRole() != null && !rule.getTargetRole().isEmpty()) {
-            UserRole role = findUserRole(rule.getTargetRole());
-            if (role != null) {
-                HttpRequest withAuth = applyAuthProfile(current, role.getTokens());
-                if (!withAuth.toString().equals(current.toString())) {
-                    current = withAuth;
-                    modified = true;
-                    appliedRolesCollector.add(role.getName());
-                    api.logging().logToOutput("    ✓ Applied Role: " + role.getName());
-                }
+        boolean wasModified = false;
+        for (int i = 0; i < rules.size(); i++) {
+            if (activeRules != null && !activeRules[i]) {
+                continue;
             }
-        }
-
-        // Iterate through operations
-        for (ReplaceRule.ReplaceOperation operation : rule.getOperations()) {
-            HttpRequest updated = applyOperation(current, operation);
-            if (updated != null && !updated.toString().equals(current.toString())) {
-                current = updated;
-                modified = true;
-                // Operation type SET_AUTH_PROFILE removed.
-                api.logging().logToOutput("    ✓ Operation applied: " + operation.describe());
+            String name = rules.get(i).name;
+            if (ruleModified[i]) {
+                wasModified = true;
+                log.debug(() -> "  ✓ Rule applied successfully: " + name);
             } else {
-                api.logging().logToOutput("    ✗ Operation had no effect: " + operation.describe());
+                log.trace(() -> "  ✗ Rule did not modify request: " + name);
             }
         }
 
-        return modified ? current : null;
+        boolean result = wasModified;
+        log.debug(() -> "Request processing complete. Was modified: " + result);
+        return result;
     }
 
-    private HttpRequest applyOperation(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        return switch (operation.getType()) {
-            case REQUEST_STRING -> replaceInRequestString(request, operation);
-            case REQUEST_HEADER -> modifyRequestHeader(request, operation);
-            case REQUEST_BODY -> replaceRequestBody(request, operation);
-            case REQUEST_PARAM_NAME -> renameParameter(request, operation);
-            case REQUEST_PARAM_VALUE -> replaceParameterValue(request, operation);
-            case REQUEST_COOKIE_NAME -> renameCookie(request, operation);
-            case REQUEST_COOKIE_VALUE -> replaceCookieValue(request, operation);
-            case REMOVE_PARAMETER_BY_NAME -> removeParameterByName(request, operation);
-            case REMOVE_PARAMETER_BY_VALUE -> removeParameterByValue(request, operation);
-            case REMOVE_COOKIE_BY_NAME -> removeCookieByName(request, operation);
-            case REMOVE_COOKIE_BY_VALUE -> removeCookieByValue(request, operation);
-            case REMOVE_HEADER_BY_NAME -> removeHeaderByName(request, operation);
-            case REMOVE_HEADER_BY_VALUE -> removeHeaderByValue(request, operation);
-            case MATCH_PARAM_NAME_REPLACE_VALUE -> setParameterValueByName(request, operation);
-            case MATCH_COOKIE_NAME_REPLACE_VALUE -> setCookieValueByName(request, operation);
-            case MATCH_HEADER_NAME_REPLACE_VALUE -> setHeaderValueByName(request, operation);
-            default -> request; // Handle unknown operation types gracefully
-        };
-    }
-
-    private HttpRequest applyAuthProfile(HttpRequest request, List<AuthToken> authTokens) {
-        HttpRequest current = request;
-
-        for (AuthToken token : authTokens) {
-            String name = token.getName();
-            String value = token.getValue();
-
-            // Validate header name
-            if (name == null || name.trim().isEmpty()) {
+    private void applyLiteralBatch(RequestEditBuffer buffer, ReplacePlan.LiteralBatch batch, boolean[] activeRules,
+            boolean[] ruleModified) {
+        boolean wholeRequest = batch.type == ReplaceRule.OperationType.REQUEST_STRING;
+        String text = wholeRequest ? buffer.asString() : buffer.bodyAsString();
+        boolean[] changed = new boolean[batch.operations.size()];
+        String updated = batch.apply(text, activeRules, changed);
+        if (updated != null) {
+            if (wholeRequest) {
+                buffer.setAll(updated);
+            } else {
+                buffer.setBody(updated);
+            }
+        }
+        for (int i = 0; i < changed.length; i++) {
+            if (activeRules != null && !activeRules[batch.ruleIndexes[i]]) {
                 continue;
             }
-            String saneName = name.trim();
-            if (saneName.endsWith(":")) {
-                saneName = saneName.substring(0, saneName.length() - 1);
+            String description = batch.operations.get(i).description;
+            if (changed[i]) {
+                ruleModified[batch.ruleIndexes[i]] = true;
+                log.trace(() -> "    ✓ Operation applied: " + description);
+            } else {
+                log.trace(() -> "    ✗ Operation had no effect: " + description);
             }
+        }
+    }
 
-            switch (token.getType()) {
-                case HEADER -> {
-                    // Try to update existing header first
-                    if (current.headerValue(saneName) != null) {
-                        current = current.withUpdatedHeader(saneName, value);
-                    } else {
-                        current = current.withAddedHeader(saneName, value);
-                    }
-                }
-                case COOKIE -> {
-                    // Update or add cookie
-                    if (current.parameterValue(saneName,
-                            burp.api.montoya.http.message.params.HttpParameterType.COOKIE) != null) {
-                        current = current.withUpdatedParameters(
-                                burp.api.montoya.http.message.params.HttpParameter.cookieParameter(saneName, value));
-                    } else {
-                        current = current.withAddedParameters(
-                                burp.api.montoya.http.message.params.HttpParameter.cookieParameter(saneName, value));
-                    }
-                }
+    private static String describeStepRules(List<ReplacePlan.CompiledRule> rules, ReplacePlan.Step step) {
+        if (step.batch == null) {
+            return rules.get(step.ruleIndex).name;
+        }
+        StringJoiner names = new StringJoiner("', '");
+        int last = -1;
+        for (int ruleIndex : step.batch.ruleIndexes) {
+            if (ruleIndex != last) {
+                names.add(rules.get(ruleIndex).name);
+                last = ruleIndex;
             }
         }
-        return current;
+        return names.toString();
     }
 
-    private UserRole findUserRole(String name) {
-        if (userRoles == null)
-            return null;
-        return userRoles.stream()
-                .filter(r -> r.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+    private boolean applyOperation(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        return switch (operation.type) {
+            case REQUEST_STRING -> replaceInRequestString(buffer, operation);
+            case REQUEST_HEADER -> modifyRequestHeader(buffer, operation);
+            case REQUEST_BODY -> replaceRequestBody(buffer, operation);
+            case REQUEST_PARAM_NAME -> renameParameter(buffer, operation);
+            case REQUEST_PARAM_VALUE -> replaceParameterValue(buffer, operation);
+            case REQUEST_COOKIE_NAME -> renameCookie(buffer, operation);
+            case REQUEST_COOKIE_VALUE -> replaceCookieValue(buffer, operation);
+            case REMOVE_PARAMETER_BY_NAME -> removeParameterByName(buffer, operation);
+            case REMOVE_PARAMETER_BY_VALUE -> removeParameterByValue(buffer, operation);
+            case REMOVE_COOKIE_BY_NAME -> removeCookieByName(buffer, operation);
+            case REMOVE_COOKIE_BY_VALUE -> removeCookieByValue(buffer, operation);
+            case REMOVE_HEADER_BY_NAME -> removeHeaderByName(buffer, operation);
+            case REMOVE_HEADER_BY_VALUE -> removeHeaderByValue(buffer, operation);
+            case MATCH_PARAM_NAME_REPLACE_VALUE -> setParameterValueByName(buffer, operation);
+            case MATCH_COOKIE_NAME_REPLACE_VALUE -> setCookieValueByName(buffer, operation);
+            case MATCH_HEADER_NAME_REPLACE_VALUE -> setHeaderValueByName(buffer, operation);
+            default -> false; // Handle unknown operation types gracefully
+        };
     }
 
-    private HttpRequest replaceInRequestString(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String pattern = operation.getMatchPattern();
-        String replace = operation.getReplaceValue();
-        if (pattern == null || pattern.isEmpty()) {
-            return request;
+    private boolean replaceInRequestString(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
 
-        String requestString = request.toString();
-        String updated;
-        if (operation.isUseRegex()) {
-            try {
-                updated = requestString.replaceAll(pattern, replace);
-            } catch (PatternSyntaxException ex) {
-                api.logging().logToError("Invalid regex in operation " + operation.describe() + ": " + ex.getMessage());
-                return request;
-            }
-        } else {
-            updated = requestString.replace(pattern, replace);
-        }
+        String requestString = buffer.asString();
+        String updated = operation.useRegex
+                ? operation.pattern.matcher(requestString).replaceAll(operation.replace)
+                : requestString.replace(operation.match, operation.replace);
 
         if (!updated.equals(requestString)) {
-            return HttpRequest.httpRequest(request.httpService(), updated);
+            buffer.setAll(updated);
+            return true;
         }
-        return request;
+        return false;
     }
 
-    private HttpRequest replaceRequestBody(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String pattern = operation.getMatchPattern();
-        String replace = operation.getReplaceValue();
-        if (pattern == null || pattern.isEmpty()) {
-            return request;
+    private boolean replaceRequestBody(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
 
-        String body = request.bodyToString();
-        String updated;
-        if (operation.isUseRegex()) {
-            try {
-                updated = body.replaceAll(pattern, replace);
-            } catch (PatternSyntaxException ex) {
-                api.logging().logToError("Invalid regex in operation " + operation.describe() + ": " + ex.getMessage());
-                return request;
-            }
-        } else {
-            updated = body.replace(pattern, replace);
-        }
+        String body = buffer.bodyAsString();
+        String updated = operation.useRegex
+                ? operation.pattern.matcher(body).replaceAll(operation.replace)
+                : body.replace(operation.match, operation.replace);
 
         if (!updated.equals(body)) {
-            return request.withBody(updated);
+            buffer.setBody(updated);
+            return true;
         }
-        return request;
+        return false;
     }
 
-    private HttpRequest modifyRequestHeader(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern() == null ? "" : operation.getMatchPattern().trim();
-        String replace = operation.getReplaceValue() == null ? "" : operation.getReplaceValue();
-
-        if (match.isEmpty()) {
-            return addHeaderFromReplace(request, replace);
-        }
-
-        Pattern pattern = compilePattern(operation, true);
-        HttpRequest current = request;
-        boolean changed = false;
-        for (var header : request.headers()) {
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(header.name()).find()
-                    : header.name().equalsIgnoreCase(match);
-            if (matches) {
-                String sanitizedValue = sanitizeHeaderValue(header.name(), replace);
-                current = current.withUpdatedHeader(header.name(), sanitizedValue);
-                changed = true;
-            }
-        }
-
-        if (!changed && !operation.isUseRegex()) {
-            String sanitizedValue = sanitizeHeaderValue(match, replace);
-            current = current.withAddedHeader(match, sanitizedValue);
-            changed = true;
+    private boolean modifyRequestHeader(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.match.isEmpty()) {
+            return addHeaderFromReplace(buffer, operation);
         }
-        return changed ? current : request;
+        return updateMatchingHeaders(buffer, operation);
     }
 
-    private HttpRequest renameParameter(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        String newName = sanitizeTokenName(operation.getReplaceValue());
-        if (match == null || match.isEmpty() || newName.isEmpty()) {
-            return request;
+    private boolean renameParameter(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        String newName = operation.tokenName;
+        if (operation.inert || newName.isEmpty()) {
+            return false;
         }
 
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (!isEditableParameter(param)) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.name()).find()
-                    : param.name().equals(match);
-            if (matches) {
-                HttpParameter oldParam = toHttpParameter(param);
-                HttpParameter newParam = createParameter(param.type(), newName, param.value());
-                current = current.withRemovedParameters(oldParam).withAddedParameters(newParam);
-                changed = true;
+        for (RequestEditBuffer.ParamList params : editableParameters(buffer)) {
+            for (int i = 0; i < params.size(); i++) {
+                if (operation.matches(params.name(i), false)) {
+                    changed |= params.rename(i, newName);
+                }
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest replaceParameterValue(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        String newValueRaw = operation.getReplaceValue();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean replaceParameterValue(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
 
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (!isEditableParameter(param)) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.value()).find()
-                    : param.value().equals(match);
-            if (matches) {
-                String sanitizedValue = sanitizeParameterValue(param.name(), newValueRaw);
-                HttpParameter updated = createParameter(param.type(), param.name(), sanitizedValue);
-                current = current.withUpdatedParameters(updated);
-                changed = true;
+        for (RequestEditBuffer.ParamList params : editableParameters(buffer)) {
+            for (int i = 0; i < params.size(); i++) {
+                if (operation.matches(params.value(i), false)) {
+                    changed |= params.setValue(i, operation.parameterValueFor(params.name(i)));
+                }
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest renameCookie(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        String newName = sanitizeTokenName(operation.getReplaceValue());
-        if (match == null || match.isEmpty() || newName.isEmpty()) {
-            return request;
+    private boolean renameCookie(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        String newName = operation.tokenName;
+        if (operation.inert || newName.isEmpty()) {
+            return false;
         }
 
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (param.type() != HttpParameterType.COOKIE) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.name()).find()
-                    : param.name().equals(match);
-            if (matches) {
-                HttpParameter oldParam = HttpParameter.cookieParameter(param.name(), param.value());
-                HttpParameter newParam = HttpParameter.cookieParameter(newName, param.value());
-                current = current.withRemovedParameters(oldParam).withAddedParameters(newParam);
-                changed = true;
+        RequestEditBuffer.ParamList cookies = buffer.cookies();
+        for (int i = 0; i < cookies.size(); i++) {
+            if (operation.matches(cookies.name(i), false)) {
+                changed |= cookies.rename(i, newName);
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest replaceCookieValue(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        String newValueRaw = operation.getReplaceValue();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean replaceCookieValue(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
 
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (param.type() != HttpParameterType.COOKIE) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.value()).find()
-                    : param.value().equals(match);
-            if (matches) {
-                String sanitizedValue = sanitizeCookieValue(param.name(), newValueRaw);
-                HttpParameter updated = HttpParameter.cookieParameter(param.name(), sanitizedValue);
-                current = current.withUpdatedParameters(updated);
-                changed = true;
+        RequestEditBuffer.ParamList cookies = buffer.cookies();
+        for (int i = 0; i < cookies.size(); i++) {
+            if (operation.matches(cookies.value(i), false)) {
+                changed |= cookies.setValue(i, operation.cookieValueFor(cookies.name(i)));
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest removeParameterByName(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean removeParameterByName(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (!isEditableParameter(param)) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.name()).find()
-                    : param.name().equals(match);
-            if (matches) {
-                current = current.withRemovedParameters(toHttpParameter(param));
-                changed = true;
-            }
-        }
-        return changed ? current : request;
-    }
-
-    private HttpRequest removeParameterByValue(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        if (match == null || match.isEmpty()) {
-            return request;
-        }
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
-        boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (!isEditableParameter(param)) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.value()).find()
-                    : param.value().equals(match);
-            if (matches) {
-                current = current.withRemovedParameters(toHttpParameter(param));
-                changed = true;
+        for (RequestEditBuffer.ParamList params : editableParameters(buffer)) {
+            for (int i = params.size() - 1; i >= 0; i--) {
+                if (operation.matches(params.name(i), false)) {
+                    params.remove(i);
+                    changed = true;
+                }
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest removeCookieByName(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean removeParameterByValue(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (param.type() != HttpParameterType.COOKIE) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.name()).find()
-                    : param.name().equals(match);
-            if (matches) {
-                current = current.withRemovedParameters(HttpParameter.cookieParameter(param.name(), param.value()));
-                changed = true;
+        for (RequestEditBuffer.ParamList params : editableParameters(buffer)) {
+            for (int i = params.size() - 1; i >= 0; i--) {
+                if (operation.matches(params.value(i), false)) {
+                    params.remove(i);
+                    changed = true;
+                }
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest removeCookieByValue(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean removeCookieByName(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (param.type() != HttpParameterType.COOKIE) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.value()).find()
-                    : param.value().equals(match);
-            if (matches) {
-                current = current.withRemovedParameters(HttpParameter.cookieParameter(param.name(), param.value()));
+        RequestEditBuffer.ParamList cookies = buffer.cookies();
+        for (int i = cookies.size() - 1; i >= 0; i--) {
+            if (operation.matches(cookies.name(i), false)) {
+                cookies.remove(i);
                 changed = true;
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest removeHeaderByName(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean removeCookieByValue(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, true);
-        HttpRequest current = request;
         boolean changed = false;
-        for (var header : request.headers()) {
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(header.name()).find()
-                    : header.name().equalsIgnoreCase(match);
-            if (matches) {
-                current = current.withRemovedHeader(header);
+        RequestEditBuffer.ParamList cookies = buffer.cookies();
+        for (int i = cookies.size() - 1; i >= 0; i--) {
+            if (operation.matches(cookies.value(i), false)) {
+                cookies.remove(i);
                 changed = true;
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest removeHeaderByValue(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean removeHeaderByName(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (var header : request.headers()) {
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(header.value()).find()
-                    : header.value().equals(match);
-            if (matches) {
-                current = current.withRemovedHeader(header);
+        for (int i = buffer.headerCount() - 1; i >= 0; i--) {
+            if (operation.matches(buffer.headerName(i), true)) {
+                buffer.removeHeader(i);
                 changed = true;
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest setParameterValueByName(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        String newValueRaw = operation.getReplaceValue();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean removeHeaderByValue(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (!isEditableParameter(param)) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.name()).find()
-                    : param.name().equals(match);
-            if (matches) {
-                String sanitizedValue = sanitizeParameterValue(param.name(), newValueRaw);
-                HttpParameter updated = createParameter(param.type(), param.name(), sanitizedValue);
-                current = current.withUpdatedParameters(updated);
+        for (int i = buffer.headerCount() - 1; i >= 0; i--) {
+            if (operation.matches(buffer.headerValue(i), false)) {
+                buffer.removeHeader(i);
                 changed = true;
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest setCookieValueByName(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        String newValueRaw = operation.getReplaceValue();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean setParameterValueByName(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, false);
-        HttpRequest current = request;
         boolean changed = false;
-        for (ParsedHttpParameter param : request.parameters()) {
-            if (param.type() != HttpParameterType.COOKIE) {
-                continue;
-            }
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(param.name()).find()
-                    : param.name().equals(match);
-            if (matches) {
-                String sanitizedValue = sanitizeCookieValue(param.name(), newValueRaw);
-                HttpParameter updated = HttpParameter.cookieParameter(param.name(), sanitizedValue);
-                current = current.withUpdatedParameters(updated);
-                changed = true;
+        for (RequestEditBuffer.ParamList params : editableParameters(buffer)) {
+            for (int i = 0; i < params.size(); i++) {
+                if (operation.matches(params.name(i), false)) {
+                    changed |= params.setValue(i, operation.parameterValueFor(params.name(i)));
+                }
             }
         }
-        return changed ? current : request;
+        return changed;
     }
 
-    private HttpRequest setHeaderValueByName(HttpRequest request, ReplaceRule.ReplaceOperation operation) {
-        String match = operation.getMatchPattern();
-        String newValue = operation.getReplaceValue();
-        if (match == null || match.isEmpty()) {
-            return request;
+    private boolean setCookieValueByName(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
-        Pattern pattern = compilePattern(operation, true);
-        HttpRequest current = request;
         boolean changed = false;
-        for (var header : request.headers()) {
-            boolean matches = operation.isUseRegex()
-                    ? pattern != null && pattern.matcher(header.name()).find()
-                    : header.name().equalsIgnoreCase(match);
-            if (matches) {
-                String sanitizedValue = sanitizeHeaderValue(header.name(), newValue);
-                current = current.withUpdatedHeader(header.name(), sanitizedValue);
-                changed = true;
-            }
-        }
-        if (!changed && !operation.isUseRegex()) {
-            String sanitizedValue = sanitizeHeaderValue(match, newValue);
-            current = current.withAddedHeader(match, sanitizedValue);
-            changed = true;
-        }
-        return changed ? current : request;
-    }
-
-    private HttpRequest addHeaderFromReplace(HttpRequest request, String replaceValue) {
-        if (replaceValue == null || replaceValue.isBlank()) {
-            api.logging().logToError("Cannot add header: replacement value is empty");
-            return request;
-        }
-        int colon = replaceValue.indexOf(':');
-        String name;
-        String value;
-        if (colon < 0) {
-            name = replaceValue.trim();
-            value = "";
-        } else {
-            name = replaceValue.substring(0, colon).trim();
-            value = replaceValue.substring(colon + 1).trim();
-        }
-        if (name.isEmpty()) {
-            api.logging().logToError("Cannot add header: unable to parse name from '" + replaceValue + "'");
-            return request;
-        }
-        return request.withAddedHeader(name, value);
-    }
-
-    private String sanitizeHeaderValue(String headerName, String replacement) {
-        if (replacement == null) {
-            return "";
-        }
-        String trimmed = replacement.trim();
-        int colon = trimmed.indexOf(':');
-        if (colon >= 0) {
-            String possibleName = trimmed.substring(0, colon).trim();
-            String possibleValue = trimmed.substring(colon + 1).trim();
-            if (!possibleValue.isEmpty() && possibleName.equalsIgnoreCase(headerName)) {
-                return possibleValue;
-            }
-        }
-        return trimmed;
-    }
-
-    private String sanitizeTokenName(String input) {
-        if (input == null) {
-            return "";
-        }
-        String trimmed = input.trim();
-        int colon = trimmed.indexOf(':');
-        if (colon >= 0) {
-            trimmed = trimmed.substring(0, colon).trim();
-        }
-        int equals = trimmed.indexOf('=');
-        if (equals >= 0) {
-            trimmed = trimmed.substring(0, equals).trim();
-        }
-        return trimmed;
-    }
-
-    private String sanitizeParameterValue(String parameterName, String replacement) {
-        if (replacement == null) {
-            return "";
-        }
-        String trimmed = replacement.trim();
-        if (parameterName != null && !parameterName.isEmpty()) {
-            String equalsPrefix = parameterName + "=";
-            if (trimmed.startsWith(equalsPrefix)) {
-                return trimmed.substring(equalsPrefix.length()).trim();
-            }
-            String spacedPrefix = parameterName + " =";
-            if (trimmed.startsWith(spacedPrefix)) {
-                return trimmed.substring(spacedPrefix.length()).trim();
-            }
-        }
-        return trimmed;
-    }
-
-    private String sanitizeCookieValue(String cookieName, String replacement) {
-        if (replacement == null) {
-            return "";
-        }
-        String trimmed = replacement.trim();
-        if (trimmed.regionMatches(true, 0, "cookie:", 0, 7)) {
-            trimmed = trimmed.substring(7).trim();
-        }
-        if (cookieName != null && !cookieName.isEmpty()) {
-            String equalsPrefix = cookieName + "=";
-            if (trimmed.startsWith(equalsPrefix)) {
-                return trimmed.substring(equalsPrefix.length()).trim();
-            }
-            String spacedPrefix = cookieName + " =";
-            if (trimmed.startsWith(spacedPrefix)) {
-                return trimmed.substring(spacedPrefix.length()).trim();
+        RequestEditBuffer.ParamList cookies = buffer.cookies();
+        for (int i = 0; i < cookies.size(); i++) {
+            if (operation.matches(cookies.name(i), false)) {
+                changed |= cookies.setValue(i, operation.cookieValueFor(cookies.name(i)));
             }
         }
-        return trimmed;
-    }
-
-    private boolean isEditableParameter(ParsedHttpParameter param) {
-        return param.type() == HttpParameterType.URL || param.type() == HttpParameterType.BODY;
-    }
-
-    private HttpParameter toHttpParameter(ParsedHttpParameter param) {
-        return createParameter(param.type(), param.name(), param.value());
-    }
-
-    private HttpParameter createParameter(HttpParameterType type, String name, String value) {
-        return switch (type) {
-            case URL -> HttpParameter.urlParameter(name, value);
-            case BODY -> HttpParameter.bodyParameter(name, value);
-            case COOKIE -> HttpParameter.cookieParameter(name, value);
-            default -> HttpParameter.parameter(name, value, type);
-        };
+        return changed;
     }
 
-    private Pattern compilePattern(ReplaceRule.ReplaceOperation operation, boolean ignoreCase) {
-        if (!operation.isUseRegex()) {
-            return null;
-        }
-        String pattern = operation.getMatchPattern();
-        if (pattern == null || pattern.isEmpty()) {
-            return null;
-        }
-        int flags = Pattern.DOTALL;
-        if (ignoreCase) {
-            flags |= Pattern.CASE_INSENSITIVE;
-        }
-        try {
-            return Pattern.compile(pattern, flags);
-        } catch (PatternSyntaxException ex) {
-            api.logging().logToError("Invalid regex in operation " + operation.describe() + ": " + ex.getMessage());
-            return null;
+    private boolean setHeaderValueByName(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.inert) {
+            return false;
         }
+        return updateMatchingHeaders(buffer, operation);
     }
 
     /**
-     * Checks if the request is for a static file (images, CSS, JS, fonts, audio,
-     * video, etc.)
-     * based on URL path extension and common content-type indicators.
+     * Sets every header whose name matches the operation; a literal name that is
+     * not present yet is added.
      */
-    private boolean isStaticFile(HttpRequestToBeSent request) {
-        String path = request.path().toLowerCase();
-
-        // Also check the full URL in case the path doesn't include the file extension
-        String url = request.url().toLowerCase();
-
-        // Check for common static file extensions
-        String[] staticExtensions = {
-                // Images
-                ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".svg", ".ico", ".webp", ".tiff", ".tif",
-                // CSS/Styles
-                ".css", ".scss", ".sass", ".less",
-                // JavaScript
-                ".js", ".jsx", ".ts", ".tsx", ".mjs",
-                // Fonts
-                ".woff", ".woff2", ".ttf", ".otf", ".eot",
-                // Audio
-                ".mp3", ".wav", ".ogg", ".m4a", ".flac", ".aac", ".wma",
-                // Video
-                ".mp4", ".avi", ".mov", ".wmv", ".flv", ".webm", ".mkv", ".m4v",
-                // Documents (often static)
-                ".pdf", ".doc", ".docx", ".xls", ".xlsx", ".ppt", ".pptx",
-                // Archives
-                ".zip", ".rar", ".tar", ".gz", ".7z",
-                // Other common static resources
-                ".swf", ".xml", ".json", ".map", ".manifest"
-        };
-
-        // Check path first (most common case)
-        for (String ext : staticExtensions) {
-            if (path.endsWith(ext)) {
-                return true;
-            }
-        }
-
-        // Check URL (in case path is just "/" but URL has extension)
-        for (String ext : staticExtensions) {
-            // Check if URL ends with extension or has it before query string
-            if (url.endsWith(ext)) {
-                return true;
-            }
-            // Check for extension before query string (e.g., /path/image.jpg?version=1)
-            int queryIndex = url.indexOf('?');
-            if (queryIndex > 0) {
-                String urlBeforeQuery = url.substring(0, queryIndex);
-                if (urlBeforeQuery.endsWith(ext)) {
-                    return true;
-                }
+    private boolean updateMatchingHeaders(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        boolean matched = false;
+        boolean changed = false;
+        for (int i = 0; i < buffer.headerCount(); i++) {
+            String name = buffer.headerName(i);
+            if (operation.matches(name, true)) {
+                matched = true;
+                changed |= buffer.setHeaderValue(i, operation.headerValueFor(name));
             }
         }
-
-        // Check for query-string-based static files (e.g., /asset?file=image.png)
-        if (path.contains("?")) {
-            String queryPart = path.substring(path.indexOf("?"));
-            for (String ext : staticExtensions) {
-                if (queryPart.contains(ext)) {
-                    return true;
-                }
-            }
+        if (!matched && !operation.useRegex) {
+            buffer.addHeader(operation.match, operation.sanitizedForMatch);
+            changed = true;
         }
-
-        return false;
+        return changed;
     }
 
-    /**
-     * Checks if the response is for a static file based on the initiating request
-     * path.
-     */
-    private boolean isStaticFileResponse(HttpResponseReceived responseReceived) {
-        String path = responseReceived.initiatingRequest().path().toLowerCase();
-        String url = responseReceived.initiatingRequest().url().toLowerCase();
-
-        // Check for common static file extensions
-        String[] staticExtensions = {
-                // Images
-                ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".svg", ".ico", ".webp", ".tiff", ".tif",
-                // CSS/Styles
-                ".css", ".scss", ".sass", ".less",
-                // JavaScript
-                ".js", ".jsx", ".ts", ".tsx", ".mjs",
-                // Fonts
-                ".woff", ".woff2", ".ttf", ".otf", ".eot",
-                // Audio
-                ".mp3", ".wav", ".ogg", ".m4a", ".flac", ".aac", ".wma",
-                // Video
-                ".mp4", ".avi", ".mov", ".wmv", ".flv", ".webm", ".mkv", ".m4v",
-                // Documents (often static)
-                ".pdf", ".doc", ".docx", ".xls", ".xlsx", ".ppt", ".pptx",
-                // Archives
-                ".zip", ".rar", ".tar", ".gz", ".7z",
-                // Other common static resources
-                ".swf", ".xml", ".json", ".map", ".manifest"
-        };
-
-        // Check path first
-        for (String ext : staticExtensions) {
-            if (path.endsWith(ext)) {
-                return true;
-            }
+    private boolean addHeaderFromReplace(RequestEditBuffer buffer, ReplacePlan.CompiledOperation operation) {
+        if (operation.replace.isBlank()) {
+            log.error("Cannot add header: replacement value is empty");
+            return false;
         }
-
-        // Check URL
-        for (String ext : staticExtensions) {
-            if (url.endsWith(ext)) {
-                return true;
-            }
-            // Check for extension before query string
-            int queryIndex = url.indexOf('?');
-            if (queryIndex > 0) {
-                String urlBeforeQuery = url.substring(0, queryIndex);
-                if (urlBeforeQuery.endsWith(ext)) {
-                    return true;
-                }
-            }
-        }
-
-        // Check for query-string-based static files
-        if (path.contains("?")) {
-            String queryPart = path.substring(path.indexOf("?"));
-            for (String ext : staticExtensions) {
-                if (queryPart.contains(ext)) {
-                    return true;
-                }
-            }
+        if (operation.addedHeaderName.isEmpty()) {
+            log.error("Cannot add header: unable to parse name from '" + operation.replace + "'");
+            return false;
         }
+        buffer.addHeader(operation.addedHeaderName, operation.addedHeaderValue);
+        return true;
+    }
 
-        return false;
+    private List<RequestEditBuffer.ParamList> editableParameters(RequestEditBuffer buffer) {
+        return List.of(buffer.queryParameters(), buffer.bodyParameters());
     }
 }
@@ -0,0 +1,134 @@
+package handler;
+
+import model.AuthToken;
+import model.UserRole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A user role reduced to the header and cookie values it sets.
+ * <p>
+ * Token names are trimmed and validated once, values are converted to wire
+ * form once, and repeated names collapse to their last value. Applying the
+ * delta walks the request headers and cookies a single time instead of
+ * searching them once per token.
+ */
+final class RoleDelta {
+    final String name;
+    final boolean enabled;
+    private final String[] headerNames;
+    private final String[] headerValues;
+    private final TreeMap<String, Integer> headerSlots = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final String[] cookieNames;
+    private final String[] cookieValues;
+    private final Map<String, Integer> cookieSlots = new HashMap<>();
+
+    private RoleDelta(UserRole role) {
+        this.name = role.getName();
+        this.enabled = role.isEnabled();
+
+        List<String> headerNameList = new ArrayList<>();
+        List<String> headerValueList = new ArrayList<>();
+        List<String> cookieNameList = new ArrayList<>();
+        List<String> cookieValueList = new ArrayList<>();
+        for (AuthToken token : role.getTokens()) {
+            String tokenName = sanitizeName(token.getName());
+            if (tokenName == null || token.getType() == null) {
+                continue;
+            }
+            String value = token.getValue() == null ? "" : RequestEditBuffer.wire(token.getValue());
+            switch (token.getType()) {
+                case HEADER -> slot(headerSlots, headerNameList, headerValueList, tokenName, value);
+                case COOKIE -> slot(cookieSlots, cookieNameList, cookieValueList, tokenName, value);
+            }
+        }
+        this.headerNames = headerNameList.toArray(new String[0]);
+        this.headerValues = headerValueList.toArray(new String[0]);
+        this.cookieNames = cookieNameList.toArray(new String[0]);
+        this.cookieValues = cookieValueList.toArray(new String[0]);
+    }
+
+    static RoleDelta of(UserRole role) {
+        return new RoleDelta(role);
+    }
+
+    /** Adds the names of the headers this role sets. */
+    void collectHeaderNames(Set<String> into) {
+        into.addAll(Arrays.asList(headerNames));
+    }
+
+    /**
+     * Sets every header and cookie of the role, updating the first existing
+     * occurrence or appending when absent. Returns true when the request changed.
+     */
+    boolean applyTo(RequestEditBuffer buffer) {
+        boolean changed = false;
+
+        if (headerNames.length > 0) {
+            boolean[] seen = new boolean[headerNames.length];
+            int count = buffer.headerCount();
+            for (int i = 0; i < count; i++) {
+                Integer slot = headerSlots.get(buffer.headerName(i));
+                if (slot != null && !seen[slot]) {
+                    seen[slot] = true;
+                    changed |= buffer.setHeaderValue(i, headerValues[slot]);
+                }
+            }
+            for (int slot = 0; slot < headerNames.length; slot++) {
+                if (!seen[slot]) {
+                    buffer.addHeader(headerNames[slot], headerValues[slot]);
+                    changed = true;
+                }
+            }
+        }
+
+        if (cookieNames.length > 0) {
+            RequestEditBuffer.ParamList cookies = buffer.cookies();
+            boolean[] seen = new boolean[cookieNames.length];
+            int count = cookies.size();
+            for (int i = 0; i < count; i++) {
+                Integer slot = cookieSlots.get(cookies.name(i));
+                if (slot != null && !seen[slot]) {
+                    seen[slot] = true;
+                    changed |= cookies.setValue(i, cookieValues[slot]);
+                }
+            }
+            for (int slot = 0; slot < cookieNames.length; slot++) {
+                if (!seen[slot]) {
+                    cookies.add(cookieNames[slot], cookieValues[slot]);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static void slot(Map<String, Integer> slots, List<String> names, List<String> values, String name,
+            String value) {
+        Integer existing = slots.get(name);
+        if (existing != null) {
+            values.set(existing, value);
+            return;
+        }
+        slots.put(name, names.size());
+        names.add(name);
+        values.add(value);
+    }
+
+    private static String sanitizeName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        String saneName = name.trim();
+        if (saneName.endsWith(":")) {
+            saneName = saneName.substring(0, saneName.length() - 1);
+        }
+        return saneName;
+    }
+}
@@ -0,0 +1,52 @@
+package handler;
+
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import model.RoleResult;
+import model.SendOutcome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The per-role replays of one request in role matrix mode.
+ * <p>
+ * Cells are filled in by synthetic send workers in any order; readers take a
+ * snapshot of whatever has completed so far.
+ */
+final class RoleMatrix {
+    private final AtomicReferenceArray<RoleResult> cells;
+
+    RoleMatrix(List<String> roles, List<HttpRequest> requests) {
+        this.cells = new AtomicReferenceArray<>(roles.size());
+        for (int i = 0; i < roles.size(); i++) {
+            cells.set(i, RoleResult.pending(roles.get(i), requests.get(i)));
+        }
+    }
+
+    int size() {
+        return cells.length();
+    }
+
+    HttpRequest request(int index) {
+        return cells.get(index).getRequest();
+    }
+
+    String role(int index) {
+        return cells.get(index).getRole();
+    }
+
+    void complete(int index, HttpResponse response, SendOutcome outcome) {
+        RoleResult cell = cells.get(index);
+        cells.set(index, RoleResult.completed(cell.getRole(), cell.getRequest(), response, outcome));
+    }
+
+    List<RoleResult> snapshot() {
+        List<RoleResult> results = new ArrayList<>(cells.length());
+        for (int i = 0; i < cells.length(); i++) {
+            results.add(cells.get(i));
+        }
+        return results;
+    }
+}
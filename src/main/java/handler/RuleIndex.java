@@ -0,0 +1,144 @@
+package handler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Maps a request's host, method and path to the replace rules whose scope
+ * covers it.
+ * <p>
+ * Path prefixes are stored in a character trie, so finding every rule whose
+ * prefix matches costs one walk down the request path. Host glob and method
+ * are only checked for the rules found along that walk. Rules without a path
+ * prefix live on the root node and are always checked.
+ */
+final class RuleIndex {
+    private final int ruleCount;
+    private final Node root = new Node();
+    private final Pattern[] hostPatterns;
+    private final String[] methods;
+
+    private RuleIndex(int ruleCount) {
+        this.ruleCount = ruleCount;
+        this.hostPatterns = new Pattern[ruleCount];
+        this.methods = new String[ruleCount];
+    }
+
+    /**
+     * Builds the index, or returns {@code null} when no rule is scoped and every
+     * rule applies to every request.
+     */
+    static RuleIndex build(List<ReplacePlan.CompiledRule> rules) {
+        boolean anyScoped = false;
+        for (ReplacePlan.CompiledRule rule : rules) {
+            anyScoped |= rule.isScoped();
+        }
+        if (!anyScoped) {
+            return null;
+        }
+
+        RuleIndex index = new RuleIndex(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            ReplacePlan.CompiledRule rule = rules.get(i);
+            index.hostPatterns[i] = rule.hostPattern.isEmpty() ? null : globToPattern(rule.hostPattern);
+            index.methods[i] = rule.method.isEmpty() ? null : rule.method;
+            Node node = index.root;
+            for (int c = 0; c < rule.pathPrefix.length(); c++) {
+                node = node.childFor(rule.pathPrefix.charAt(c));
+            }
+            node.addRule(i);
+        }
+        return index;
+    }
+
+    /**
+     * Returns one flag per rule, set when the rule's scope covers the request.
+     */
+    boolean[] candidates(String host, String method, String path) {
+        boolean[] active = new boolean[ruleCount];
+        String safeHost = host == null ? "" : host;
+        String safeMethod = method == null ? "" : method;
+        String safePath = path == null ? "" : path;
+
+        Node node = root;
+        collect(node, safeHost, safeMethod, active);
+        for (int i = 0; i < safePath.length(); i++) {
+            node = node.child(safePath.charAt(i));
+            if (node == null) {
+                break;
+            }
+            collect(node, safeHost, safeMethod, active);
+        }
+        return active;
+    }
+
+    private void collect(Node node, String host, String method, boolean[] active) {
+        for (int i = 0; i < node.ruleCount; i++) {
+            int rule = node.rules[i];
+            if (methods[rule] != null && !methods[rule].equalsIgnoreCase(method)) {
+                continue;
+            }
+            if (hostPatterns[rule] != null && !hostPatterns[rule].matcher(host).matches()) {
+                continue;
+            }
+            active[rule] = true;
+        }
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private int[] rules = new int[0];
+        private int ruleCount;
+
+        Node child(char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node childFor(char c) {
+            Node existing = child(c);
+            if (existing != null) {
+                return existing;
+            }
+            Node created = new Node();
+            labels = Arrays.copyOf(labels, labels.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            labels[labels.length - 1] = c;
+            children[children.length - 1] = created;
+            return created;
+        }
+
+        void addRule(int rule) {
+            if (ruleCount == rules.length) {
+                rules = Arrays.copyOf(rules, Math.max(2, rules.length * 2));
+            }
+            rules[ruleCount++] = rule;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package handler;
+
+import burp.api.montoya.http.message.requests.HttpRequest;
+import model.ExtensionConfig;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides whether a request targets a static asset.
+ * <p>
+ * The file extension is cut out of the request path once and looked up in a
+ * hash set built from {@link ExtensionConfig#getStaticFileExtensions()}. The set
+ * is rebuilt only when the configured list changes. Extensionless assets are
+ * only known once their response arrives, so the URLs of those are remembered
+ * in a small LRU and skipped from then on.
+ */
+final class StaticFileClassifier {
+    /** Longest extension worth looking up; anything longer is not a file type. */
+    private static final int MAX_EXTENSION_LENGTH = 10;
+    private static final int MAX_LEARNED_ASSETS = 1024;
+
+    private static final Set<String> STATIC_CONTENT_TYPES = Set.of(
+            "text/css",
+            "text/javascript",
+            "application/javascript",
+            "application/x-javascript",
+            "application/wasm",
+            "application/font-woff",
+            "application/x-font-woff",
+            "application/x-font-ttf",
+            "application/vnd.ms-fontobject");
+
+    private final ExtensionConfig config;
+    private volatile Snapshot snapshot = new Snapshot(null, Set.of());
+    private final Map<String, Boolean> learnedAssets =
+            new LinkedHashMap<>(MAX_LEARNED_ASSETS * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_LEARNED_ASSETS;
+                }
+            };
+
+    StaticFileClassifier(ExtensionConfig config) {
+        this.config = config;
+    }
+
+    boolean isStatic(HttpRequest request) {
+        String path = request.path();
+        if (path == null || path.isEmpty()) {
+            return false;
+        }
+        if (config.isStaticContentTypeCheck() && isLearned(request, path)) {
+            return true;
+        }
+        Set<String> extensions = extensions();
+        if (extensions.isEmpty()) {
+            return false;
+        }
+
+        int query = path.indexOf('?');
+        int pathEnd = query < 0 ? path.length() : query;
+        // Ignore matrix parameters such as ;jsessionid=...
+        int matrix = path.lastIndexOf(';', pathEnd - 1);
+        if (matrix > path.lastIndexOf('/', pathEnd - 1)) {
+            pathEnd = matrix;
+        }
+        if (matches(extensions, path, path.lastIndexOf('/', pathEnd - 1) + 1, pathEnd)) {
+            return true;
+        }
+
+        // Assets served through a query, e.g. /asset?file=logo.png
+        if (query >= 0) {
+            int valueStart = Math.max(query, Math.max(path.lastIndexOf('/'),
+                    Math.max(path.lastIndexOf('='), path.lastIndexOf('&')))) + 1;
+            return matches(extensions, path, valueStart, path.length());
+        }
+        return false;
+    }
+
+    /**
+     * Remembers the URL of {@code request} as a static asset when the
+     * Content-Type of its response names one, so later requests for it are
+     * skipped by {@link #isStatic}.
+     */
+    void learn(HttpRequest request, String contentType) {
+        String path = request.path();
+        if (path == null || path.isEmpty() || !isStaticContentType(contentType)) {
+            return;
+        }
+        String key = assetKey(request, path);
+        synchronized (learnedAssets) {
+            learnedAssets.put(key, Boolean.TRUE);
+        }
+    }
+
+    void clearLearned() {
+        synchronized (learnedAssets) {
+            learnedAssets.clear();
+        }
+    }
+
+    private boolean isLearned(HttpRequest request, String path) {
+        String key = assetKey(request, path);
+        synchronized (learnedAssets) {
+            return learnedAssets.get(key) != null;
+        }
+    }
+
+    /** Host and path without the query, so cache-busting parameters still match. */
+    private static String assetKey(HttpRequest request, String path) {
+        int query = path.indexOf('?');
+        String host = request.httpService() != null ? request.httpService().host() : "";
+        return host + (query < 0 ? path : path.substring(0, query));
+    }
+
+    /**
+     * True when the Content-Type header value names a static asset type.
+     */
+    static boolean isStaticContentType(String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mime = (semicolon < 0 ? contentType : contentType.substring(0, semicolon))
+                .trim().toLowerCase(Locale.ROOT);
+        return mime.startsWith("image/")
+                || mime.startsWith("font/")
+                || mime.startsWith("audio/")
+                || mime.startsWith("video/")
+                || STATIC_CONTENT_TYPES.contains(mime);
+    }
+
+    /**
+     * Looks up the extension of the file name in {@code text[start, end)}.
+     */
+    private static boolean matches(Set<String> extensions, String text, int start, int end) {
+        int dot = text.lastIndexOf('.', end - 1);
+        if (dot < start || end - dot - 1 == 0 || end - dot - 1 > MAX_EXTENSION_LENGTH) {
+            return false;
+        }
+        return extensions.contains(text.substring(dot + 1, end).toLowerCase(Locale.ROOT));
+    }
+
+    private Set<String> extensions() {
+        String configured = config.getStaticFileExtensions();
+        Snapshot current = snapshot;
+        if (current.source != configured) {
+            current = new Snapshot(configured, parse(configured));
+            snapshot = current;
+        }
+        return current.extensions;
+    }
+
+    private static Set<String> parse(String list) {
+        Set<String> extensions = new HashSet<>();
+        if (list == null) {
+            return extensions;
+        }
+        for (String part : list.split("[,\\s]+")) {
+            String extension = part.trim().toLowerCase(Locale.ROOT);
+            while (extension.startsWith(".")) {
+                extension = extension.substring(1);
+            }
+            if (!extension.isEmpty()) {
+                extensions.add(extension);
+            }
+        }
+        return extensions;
+    }
+
+    private static final class Snapshot {
+        final String source;
+        final Set<String> extensions;
+
+        Snapshot(String source, Set<String> extensions) {
+            this.source = source;
+            this.extensions = Set.copyOf(extensions);
+        }
+    }
+}
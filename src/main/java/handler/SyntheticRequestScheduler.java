@@ -0,0 +1,613 @@
+package handler;
+
+import burp.api.montoya.core.ToolType;
+import model.ExtensionConfig;
+import model.HostStats;
+import model.OverflowPolicy;
+import model.SyntheticStats;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs extension-originated (unauth and preview) requests with bounded
+ * concurrency.
+ * <p>
+ * Jobs wait in a bounded queue and are started only while fewer than
+ * {@link ExtensionConfig#getSyntheticMaxConcurrency()} are running in total
+ * and fewer than {@link ExtensionConfig#getSyntheticPerHostConcurrency()}
+ * are running against the job's host. A job whose host is saturated is
+ * skipped, not blocking jobs for other hosts behind it. Limits are read from
+ * the config on every dispatch, so settings changes apply immediately.
+ * <p>
+ * With {@link ExtensionConfig#isSyntheticAdaptiveConcurrency()} the global
+ * limit is instead set by an {@link AdaptiveConcurrencyLimit} fed with the
+ * latency and status of every send, and the configured maximum becomes its
+ * ceiling.
+ * <p>
+ * The queue is ordered by the tool the request came from, following
+ * {@link ExtensionConfig#getSyntheticToolPriority()}, so an interactive
+ * Repeater check is not stuck behind background Proxy traffic. Each job gets
+ * a start deadline of its enqueue time plus {@code rank} aging steps and the
+ * earliest deadline goes first. A low-priority job therefore overtakes newer
+ * high-priority work once it has waited long enough, and is never starved.
+ * <p>
+ * When {@link ExtensionConfig#getSyntheticRatePerSecond()} is set, each host
+ * also has a {@link TokenBucket} and a job only starts when its host has a
+ * token. Jobs held back by the rate limit stay queued and a timer re-runs
+ * dispatch when the next token is due.
+ * <p>
+ * A job can carry a cancellation flag. Cancelled jobs are dropped instead of
+ * started, and {@link #purgeCancelled()} removes them from the queue right
+ * away. Jobs that are already running are bounded by the send timeout rather
+ * than interrupted.
+ * <p>
+ * Started jobs run on a pool of platform threads, or on virtual threads when
+ * {@link ExtensionConfig#isSyntheticVirtualThreads()} is set and the JVM
+ * provides them. The in-flight counters above are the only concurrency cap in
+ * either mode, so switching to virtual threads lets a slow target hold many
+ * requests open without holding as many OS threads. On platform threads the
+ * global limit is capped at {@link #PLATFORM_MAX_CONCURRENCY}, whatever the
+ * configured maximum, so the cached pool cannot grow into thousands of OS
+ * threads.
+ */
+final class SyntheticRequestScheduler {
+    /**
+     * Longest a caller waits under {@link OverflowPolicy#BLOCK} before the job
+     * is dropped. Kept short because the caller is usually Burp's own HTTP
+     * handler thread.
+     */
+    private static final long MAX_BLOCK_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+    /** Highest global limit while jobs run on the platform thread pool. */
+    static final int PLATFORM_MAX_CONCURRENCY = 256;
+    /** Idle buckets are pruned once this many hosts have been seen. */
+    private static final int MAX_IDLE_BUCKETS = 256;
+
+    private final ExtensionConfig config;
+    private final ExecutorService workers;
+    /** Null when the running JVM has no virtual threads. */
+    private final ExecutorService virtualWorkers;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final TreeSet<Job> queue = new TreeSet<>(
+            Comparator.comparingLong((Job job) -> job.deadline).thenComparingLong(job -> job.sequence));
+    private final Map<String, Integer> inFlightByHost = new HashMap<>();
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private final AdaptiveConcurrencyLimit adaptiveLimit;
+    private final ScheduledExecutorService timer;
+    private long redispatchAt = Long.MAX_VALUE;
+    private long sequence;
+    private String prioritySource;
+    private Map<ToolType, Integer> priorityRanks = Map.of();
+    private final AtomicInteger threadCounter = new AtomicInteger(1);
+    private int inFlight;
+    private long submitted;
+    private long completed;
+    private long dropped;
+    private boolean running = true;
+
+    SyntheticRequestScheduler(ExtensionConfig config) {
+        this.config = config;
+        // Concurrency is bounded by dispatch, so the pool never grows past the global cap
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "auth-mutator-synthetic-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.virtualWorkers = newVirtualThreadExecutor();
+        this.adaptiveLimit = new AdaptiveConcurrencyLimit(Math.max(1, maxConcurrency() / 2));
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "auth-mutator-synthetic-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * True when the running JVM can execute jobs on virtual threads.
+     */
+    static boolean virtualThreadsAvailable() {
+        return VIRTUAL_EXECUTOR_FACTORY != null;
+    }
+
+    /**
+     * Queues a job. {@code onDrop} runs instead of {@code work} if the job is
+     * discarded by the overflow policy, cancelled, or discarded by shutdown.
+     */
+    void submit(String host, ToolType tool, BooleanSupplier cancelled, Runnable work, Runnable onDrop) {
+        enqueue(host, tool, cancelled, work, onDrop, false);
+    }
+
+    /**
+     * Queues a job after {@code delayMillis}, e.g. for a retry backoff. The job
+     * does not hold a queue slot or a concurrency permit while waiting.
+     * <p>
+     * When it comes due it bypasses the overflow policy: it already got past
+     * it once, and the timer thread that enqueues it also runs the rate-limit
+     * redispatch, so it must never block on a full queue.
+     */
+    void submitAfter(long delayMillis, String host, ToolType tool, BooleanSupplier cancelled, Runnable work,
+            Runnable onDrop) {
+        try {
+            timer.schedule(() -> enqueue(host, tool, cancelled, work, onDrop, true),
+                    delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (onDrop != null) {
+                onDrop.run();
+            }
+        }
+    }
+
+    private void enqueue(String host, ToolType tool, BooleanSupplier cancelled, Runnable work, Runnable onDrop,
+            boolean resubmitted) {
+        Job job = null;
+        Job evicted = null;
+        boolean rejected = false;
+        lock.lock();
+        try {
+            if (!running) {
+                rejected = true;
+            } else {
+                int capacity = Math.max(1, config.getSyntheticQueueCapacity());
+                if (!resubmitted && queue.size() >= capacity) {
+                    switch (config.getSyntheticOverflowPolicy()) {
+                        case DROP_NEW -> rejected = true;
+                        case DROP_OLDEST -> evicted = pollOldestOfLowestRank();
+                        case BLOCK -> rejected = !awaitSpace(capacity);
+                    }
+                }
+                if (rejected) {
+                    dropped++;
+                } else {
+                    if (evicted != null) {
+                        dropped++;
+                    }
+                    job = newJob(host, tool, cancelled, work, onDrop);
+                    queue.add(job);
+                    submitted++;
+                    dispatch();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (evicted != null) {
+            evicted.drop();
+        }
+        if (rejected && onDrop != null) {
+            onDrop.run();
+        }
+    }
+
+    /**
+     * Drops every queued job whose cancellation flag is set.
+     */
+    void purgeCancelled() {
+        List<Job> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Job> it = queue.iterator();
+            while (it.hasNext()) {
+                Job job = it.next();
+                if (job.isCancelled()) {
+                    it.remove();
+                    removed.add(job);
+                }
+            }
+            dropped += removed.size();
+            if (!removed.isEmpty()) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Job job : removed) {
+            job.drop();
+        }
+    }
+
+    /**
+     * Drops every queued job, e.g. when the extension is switched off.
+     */
+    void cancelQueued() {
+        List<Job> removed;
+        lock.lock();
+        try {
+            removed = new ArrayList<>(queue);
+            queue.clear();
+            dropped += removed.size();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Job job : removed) {
+            job.drop();
+        }
+    }
+
+    /**
+     * Feeds the latency and status of one completed send to the adaptive
+     * limit; {@code statusCode} is negative when no response arrived.
+     */
+    void recordLatency(long latencyNanos, int statusCode) {
+        boolean overload = statusCode < 0 || statusCode == 429 || statusCode >= 500;
+        lock.lock();
+        try {
+            adaptiveLimit.record(latencyNanos, overload, maxConcurrency(), config.isSyntheticAdaptiveConcurrency());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    SyntheticStats stats() {
+        lock.lock();
+        try {
+            return new SyntheticStats(queue.size(), inFlight, submitted, completed, dropped, 0, hostStats(),
+                    concurrencyLimit(), adaptiveLimit.p50Millis(), adaptiveLimit.p90Millis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops everything still queued and stops the workers. Returns false when
+     * running jobs did not finish within the timeout.
+     */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        ArrayDeque<Job> abandoned;
+        lock.lock();
+        try {
+            running = false;
+            abandoned = new ArrayDeque<>(queue);
+            queue.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Job job : abandoned) {
+            job.drop();
+        }
+        timer.shutdownNow();
+        workers.shutdownNow();
+        if (virtualWorkers != null) {
+            virtualWorkers.shutdownNow();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = workers.awaitTermination(timeout, unit);
+        if (virtualWorkers != null) {
+            terminated &= virtualWorkers.awaitTermination(
+                    Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return terminated;
+    }
+
+    private boolean awaitSpace(int capacity) {
+        long remaining = MAX_BLOCK_NANOS;
+        try {
+            while (running && queue.size() >= capacity) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return running;
+    }
+
+    /** Starts as many queued jobs as the limits allow. Caller holds the lock. */
+    private void dispatch() {
+        int globalLimit = concurrencyLimit();
+        int hostLimit = Math.max(1, config.getSyntheticPerHostConcurrency());
+        int rate = config.getSyntheticRatePerSecond();
+        int burst = Math.max(1, config.getSyntheticRateBurst());
+        long now = System.nanoTime();
+        long nextToken = Long.MAX_VALUE;
+        // Hosts already found saturated or out of tokens in this pass
+        Set<String> blocked = null;
+
+        Iterator<Job> it = queue.iterator();
+        List<Job> cancelled = null;
+        while (inFlight < globalLimit && it.hasNext()) {
+            Job job = it.next();
+            if (job.isCancelled()) {
+                it.remove();
+                dropped++;
+                if (cancelled == null) {
+                    cancelled = new ArrayList<>();
+                }
+                cancelled.add(job);
+                continue;
+            }
+            if (blocked != null && blocked.contains(job.host)) {
+                continue;
+            }
+            int hostInFlight = inFlightByHost.getOrDefault(job.host, 0);
+            boolean allowed = hostInFlight < hostLimit;
+            if (allowed && rate > 0) {
+                TokenBucket bucket = buckets.computeIfAbsent(job.host, h -> new TokenBucket(burst, now));
+                if (!bucket.tryAcquire(rate, burst, now)) {
+                    allowed = false;
+                    nextToken = Math.min(nextToken, bucket.nanosUntilToken(rate));
+                }
+            }
+            if (!allowed) {
+                if (blocked == null) {
+                    blocked = new HashSet<>();
+                }
+                blocked.add(job.host);
+                continue;
+            }
+            it.remove();
+            inFlight++;
+            inFlightByHost.put(job.host, hostInFlight + 1);
+            try {
+                executor().execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                release(job);
+                dropped++;
+                job.drop();
+            }
+        }
+        if (inFlight >= globalLimit && it.hasNext()) {
+            adaptiveLimit.markSaturated();
+        }
+        notFull.signalAll();
+        if (cancelled != null) {
+            for (Job job : cancelled) {
+                job.drop();
+            }
+        }
+
+        if (nextToken != Long.MAX_VALUE && running) {
+            scheduleRedispatch(now, nextToken);
+        }
+        if (buckets.size() > MAX_IDLE_BUCKETS) {
+            pruneIdleBuckets(burst);
+        }
+    }
+
+    /** Caller holds the lock. */
+    private int concurrencyLimit() {
+        int ceiling = maxConcurrency();
+        return config.isSyntheticAdaptiveConcurrency() ? adaptiveLimit.limit(ceiling) : ceiling;
+    }
+
+    /** Configured maximum, capped while the platform pool is in use. */
+    private int maxConcurrency() {
+        int configured = Math.max(1, config.getSyntheticMaxConcurrency());
+        return usesVirtualThreads() ? configured : Math.min(configured, PLATFORM_MAX_CONCURRENCY);
+    }
+
+    /** Arranges a dispatch pass when the next token is due, unless one is already planned earlier. */
+    private void scheduleRedispatch(long now, long delay) {
+        long due = now + Math.max(delay, TimeUnit.MILLISECONDS.toNanos(1));
+        if (redispatchAt != Long.MAX_VALUE && redispatchAt - due <= 0) {
+            return;
+        }
+        redispatchAt = due;
+        try {
+            timer.schedule(() -> {
+                lock.lock();
+                try {
+                    if (redispatchAt == due) {
+                        redispatchAt = Long.MAX_VALUE;
+                    }
+                    if (running) {
+                        dispatch();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }, due - now, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            redispatchAt = Long.MAX_VALUE;
+        }
+    }
+
+    private void pruneIdleBuckets(int burst) {
+        Set<String> queuedHosts = new HashSet<>();
+        for (Job job : queue) {
+            queuedHosts.add(job.host);
+        }
+        buckets.entrySet().removeIf(entry -> entry.getValue().isFull(burst)
+                && !inFlightByHost.containsKey(entry.getKey())
+                && !queuedHosts.contains(entry.getKey()));
+    }
+
+    /** Per-host counters, busiest first. Caller holds the lock. */
+    private List<HostStats> hostStats() {
+        Map<String, Integer> queuedByHost = new HashMap<>();
+        for (Job job : queue) {
+            queuedByHost.merge(job.host, 1, Integer::sum);
+        }
+        Set<String> hosts = new HashSet<>(queuedByHost.keySet());
+        hosts.addAll(inFlightByHost.keySet());
+
+        int rate = config.getSyntheticRatePerSecond();
+        int burst = Math.max(1, config.getSyntheticRateBurst());
+        long now = System.nanoTime();
+        List<HostStats> result = new ArrayList<>(hosts.size());
+        for (String host : hosts) {
+            double tokens = -1;
+            if (rate > 0) {
+                TokenBucket bucket = buckets.get(host);
+                tokens = bucket == null ? burst : bucket.available(rate, burst, now);
+            }
+            result.add(new HostStats(host, queuedByHost.getOrDefault(host, 0),
+                    inFlightByHost.getOrDefault(host, 0), tokens));
+        }
+        result.sort(Comparator.comparingInt((HostStats h) -> h.getQueued() + h.getInFlight()).reversed()
+                .thenComparing(HostStats::getHost));
+        return result;
+    }
+
+    /** Caller holds the lock. */
+    private Job newJob(String host, ToolType tool, BooleanSupplier cancelled, Runnable work, Runnable onDrop) {
+        int rank = rankOf(tool);
+        long aging = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getSyntheticPriorityAgingMillis()));
+        long deadline = System.nanoTime() + rank * aging;
+        return new Job(normalizeHost(host), rank, deadline, sequence++, cancelled, work, onDrop);
+    }
+
+    /**
+     * Position of the tool in the configured priority list; unlisted tools
+     * come after every listed one.
+     */
+    private int rankOf(ToolType tool) {
+        String configured = config.getSyntheticToolPriority();
+        if (configured != prioritySource) {
+            priorityRanks = parsePriority(configured);
+            prioritySource = configured;
+        }
+        Integer rank = tool == null ? null : priorityRanks.get(tool);
+        return rank != null ? rank : priorityRanks.size();
+    }
+
+    private static Map<ToolType, Integer> parsePriority(String list) {
+        Map<ToolType, Integer> ranks = new EnumMap<>(ToolType.class);
+        if (list == null) {
+            return ranks;
+        }
+        for (String part : list.split("[,>\\s]+")) {
+            String name = part.trim().toUpperCase(Locale.ROOT);
+            if (name.isEmpty()) {
+                continue;
+            }
+            try {
+                ranks.putIfAbsent(ToolType.valueOf(name), ranks.size());
+            } catch (IllegalArgumentException ignored) {
+                // Unknown tool names are skipped
+            }
+        }
+        return ranks;
+    }
+
+    /** The oldest job among those with the lowest priority. Caller holds the lock. */
+    private Job pollOldestOfLowestRank() {
+        Job victim = null;
+        for (Job job : queue) {
+            if (victim == null || job.rank > victim.rank
+                    || (job.rank == victim.rank && job.sequence < victim.sequence)) {
+                victim = job;
+            }
+        }
+        if (victim != null) {
+            queue.remove(victim);
+        }
+        return victim;
+    }
+
+    private ExecutorService executor() {
+        return usesVirtualThreads() ? virtualWorkers : workers;
+    }
+
+    private boolean usesVirtualThreads() {
+        return virtualWorkers != null && config.isSyntheticVirtualThreads();
+    }
+
+    private void run(Job job) {
+        try {
+            job.work.run();
+        } finally {
+            lock.lock();
+            try {
+                release(job);
+                completed++;
+                if (running) {
+                    dispatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void release(Job job) {
+        inFlight--;
+        int remaining = inFlightByHost.getOrDefault(job.host, 1) - 1;
+        if (remaining <= 0) {
+            inFlightByHost.remove(job.host);
+        } else {
+            inFlightByHost.put(job.host, remaining);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (VIRTUAL_EXECUTOR_FACTORY == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Looked up reflectively so the same jar still loads on a Java 17 runtime
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static String normalizeHost(String host) {
+        return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Job {
+        final String host;
+        final int rank;
+        final long deadline;
+        final long sequence;
+        final BooleanSupplier cancelled;
+        final Runnable work;
+        final Runnable onDrop;
+
+        Job(String host, int rank, long deadline, long sequence, BooleanSupplier cancelled, Runnable work,
+                Runnable onDrop) {
+            this.host = host;
+            this.rank = rank;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.cancelled = cancelled;
+            this.work = work;
+            this.onDrop = onDrop;
+        }
+
+        boolean isCancelled() {
+            return cancelled != null && cancelled.getAsBoolean();
+        }
+
+        void drop() {
+            if (onDrop != null) {
+                onDrop.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package handler;
+
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import model.ExtensionConfig;
+import util.ContentFingerprint;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived cache of unauth responses, so identical stripped requests are
+ * sent once and share the result.
+ * <p>
+ * Entries are keyed by method, URL, the remaining headers (names lowercased,
+ * sorted) and a hash of the body. A key is claimed before the send, so a
+ * duplicate arriving while the first request is still in flight waits on the
+ * same future instead of sending again. Completed entries live for
+ * {@link ExtensionConfig#getUnauthCacheTtlSeconds()}; the map is kept in
+ * access order and trimmed to {@link ExtensionConfig#getUnauthCacheMaxEntries()}.
+ * Failed or dropped sends are evicted so the next duplicate retries.
+ */
+final class SyntheticResponseCache {
+    private final ExtensionConfig config;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long hits;
+
+    SyntheticResponseCache(ExtensionConfig config) {
+        this.config = config;
+    }
+
+    boolean isEnabled() {
+        return config.getUnauthCacheTtlSeconds() > 0;
+    }
+
+    /**
+     * Returns the shared future of a live entry for {@code key}, or registers
+     * {@code owner} under the key and returns {@code null}, in which case the
+     * caller must send the request and complete {@code owner}.
+     */
+    synchronized CompletableFuture<HttpResponse> claim(String key, CompletableFuture<HttpResponse> owner) {
+        long now = System.nanoTime();
+        Entry existing = entries.get(key);
+        if (existing != null && !existing.isExpired(now)) {
+            hits++;
+            return existing.response;
+        }
+        entries.put(key, new Entry(owner));
+        trim(now);
+        return null;
+    }
+
+    /**
+     * Starts the TTL of a successfully completed entry.
+     */
+    synchronized void completed(String key, CompletableFuture<HttpResponse> owner) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.response == owner) {
+            entry.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getUnauthCacheTtlSeconds());
+        }
+    }
+
+    /**
+     * Forgets an entry whose send failed or was dropped.
+     */
+    synchronized void evict(String key, CompletableFuture<HttpResponse> owner) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.response == owner) {
+            entries.remove(key);
+        }
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    static String keyOf(HttpRequest request) {
+        List<String> headers = new ArrayList<>();
+        for (HttpHeader header : request.headers()) {
+            headers.add(header.name().toLowerCase(Locale.ROOT) + ":" + header.value());
+        }
+        headers.sort(null);
+
+        StringBuilder key = new StringBuilder(128);
+        key.append(request.method()).append(' ').append(request.url()).append('\n');
+        for (String header : headers) {
+            key.append(header).append('\n');
+        }
+        byte[] body = request.body() != null ? request.body().getBytes() : new byte[0];
+        key.append(body.length).append(':').append(Long.toHexString(ContentFingerprint.of(body)));
+        return key.toString();
+    }
+
+    /** Drops expired entries, then the least recently used ones above the size limit. Caller holds the lock. */
+    private void trim(long now) {
+        int limit = Math.max(1, config.getUnauthCacheMaxEntries());
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entries.size() <= limit && !entry.isExpired(now)) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<HttpResponse> response;
+        /** Long.MAX_VALUE while the send is still in flight. */
+        long expiresAt = Long.MAX_VALUE;
+
+        Entry(CompletableFuture<HttpResponse> response) {
+            this.response = response;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+        }
+    }
+}
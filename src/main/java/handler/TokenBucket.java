@@ -0,0 +1,63 @@
+package handler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket for one target host.
+ * <p>
+ * Rate and burst are passed on every call rather than fixed at construction,
+ * so settings changes apply to existing buckets. Not thread safe; the
+ * scheduler only touches buckets while holding its lock.
+ */
+final class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(int burst, long now) {
+        this.tokens = burst;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes one token if available.
+     */
+    boolean tryAcquire(int ratePerSecond, int burst, long now) {
+        refill(ratePerSecond, burst, now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Nanoseconds until the next whole token is available.
+     */
+    long nanosUntilToken(int ratePerSecond) {
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / ratePerSecond);
+    }
+
+    double available(int ratePerSecond, int burst, long now) {
+        refill(ratePerSecond, burst, now);
+        return tokens;
+    }
+
+    boolean isFull(int burst) {
+        return tokens >= burst;
+    }
+
+    private void refill(int ratePerSecond, int burst, long now) {
+        long elapsed = now - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * ratePerSecond / NANOS_PER_SECOND);
+            refilledAt = now;
+        } else if (tokens > burst) {
+            tokens = burst;
+        }
+    }
+}
@@ -3,6 +3,27 @@ package model;
 import burp.api.montoya.core.ToolType;
 
 public class ExtensionConfig {
+    public static final String DEFAULT_SYNTHETIC_TOOL_PRIORITY = "REPEATER,INTRUDER,PROXY,SCANNER";
+    public static final String DEFAULT_STATIC_FILE_EXTENSIONS = String.join(",",
+            // Images
+            "jpg", "jpeg", "png", "gif", "bmp", "svg", "ico", "webp", "tiff", "tif",
+            // CSS/Styles
+            "css", "scss", "sass", "less",
+            // JavaScript
+            "js", "jsx", "ts", "tsx", "mjs",
+            // Fonts
+            "woff", "woff2", "ttf", "otf", "eot",
+            // Audio
+            "mp3", "wav", "ogg", "m4a", "flac", "aac", "wma",
+            // Video
+            "mp4", "avi", "mov", "wmv", "flv", "webm", "mkv", "m4v",
+            // Documents (often static)
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx",
+            // Archives
+            "zip", "rar", "tar", "gz", "7z",
+            // Other common static resources
+            "swf", "xml", "json", "map", "manifest");
+
     private boolean extensionEnabled;
     private boolean onlyInScope;
     private boolean interceptEnabled;
@@ -10,6 +31,9 @@ public class ExtensionConfig {
     private boolean unauthenticatedTesting;
     private boolean applyRulesToUnauthenticatedRequest;
     private boolean excludeStaticFiles;
+    private String staticFileExtensions;
+    private boolean staticContentTypeCheck;
+    private boolean roleMatrix;
 
     // Per-tool application flags
     private boolean applyToProxy;
@@ -20,6 +44,27 @@ public class ExtensionConfig {
     // Preview mode for Proxy: don't modify traffic, but compute and show diffs
     private boolean previewInProxy;
     private int maxLogEntries;
+    private boolean diskBackedLog;
+    private boolean compressLogMessages;
+    private LogLevel logLevel;
+
+    // Extension-originated (unauth and preview) request scheduling
+    private int syntheticMaxConcurrency;
+    private int syntheticPerHostConcurrency;
+    private int syntheticQueueCapacity;
+    private OverflowPolicy syntheticOverflowPolicy;
+    private boolean syntheticVirtualThreads;
+    private boolean syntheticAdaptiveConcurrency;
+    private int syntheticRatePerSecond;
+    private int syntheticRateBurst;
+    private int syntheticTimeoutMillis;
+    private int syntheticMaxRetries;
+    private int syntheticRetryBackoffMillis;
+    private String syntheticToolPriority;
+    private int syntheticPriorityAgingMillis;
+    private int unauthCacheTtlSeconds;
+    private int unauthCacheMaxEntries;
+    private int pendingResponseTtlSeconds;
 
     public ExtensionConfig() {
     this.extensionEnabled = false;
@@ -29,6 +74,9 @@ public class ExtensionConfig {
     this.unauthenticatedTesting = false;
     this.applyRulesToUnauthenticatedRequest = false;
     this.excludeStaticFiles = true;
+        this.staticFileExtensions = DEFAULT_STATIC_FILE_EXTENSIONS;
+        this.staticContentTypeCheck = false;
+        this.roleMatrix = false;
 
         // Sensible defaults: don't affect browser traffic by default
         this.applyToProxy = false;
@@ -37,6 +85,25 @@ public class ExtensionConfig {
         this.applyToScanner = false;
         this.previewInProxy = true;
         this.maxLogEntries = 1000;
+        this.diskBackedLog = false;
+        this.compressLogMessages = true;
+        this.logLevel = LogLevel.INFO;
+        this.syntheticMaxConcurrency = 8;
+        this.syntheticPerHostConcurrency = 2;
+        this.syntheticQueueCapacity = 500;
+        this.syntheticOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+        this.syntheticVirtualThreads = false;
+        this.syntheticAdaptiveConcurrency = false;
+        this.syntheticRatePerSecond = 0;
+        this.syntheticRateBurst = 5;
+        this.syntheticTimeoutMillis = 15000;
+        this.syntheticMaxRetries = 2;
+        this.syntheticRetryBackoffMillis = 500;
+        this.syntheticToolPriority = DEFAULT_SYNTHETIC_TOOL_PRIORITY;
+        this.syntheticPriorityAgingMillis = 2000;
+        this.unauthCacheTtlSeconds = 10;
+        this.unauthCacheMaxEntries = 1000;
+        this.pendingResponseTtlSeconds = 120;
     }
 
     public boolean isOnlyInScope() {
@@ -135,6 +202,223 @@ public class ExtensionConfig {
         this.maxLogEntries = Math.max(100, maxLogEntries);
     }
 
+    /**
+     * When set, logged messages beyond the newest few hundred rows are kept
+     * in temporary files instead of on the heap.
+     */
+    public boolean isDiskBackedLog() {
+        return diskBackedLog;
+    }
+
+    public void setDiskBackedLog(boolean diskBackedLog) {
+        this.diskBackedLog = diskBackedLog;
+    }
+
+    /**
+     * When set and messages are not kept on disk, logged messages beyond the
+     * newest few hundred rows are kept deflate-compressed on the heap.
+     */
+    public boolean isCompressLogMessages() {
+        return compressLogMessages;
+    }
+
+    public void setCompressLogMessages(boolean compressLogMessages) {
+        this.compressLogMessages = compressLogMessages;
+    }
+
+    /**
+     * How long a tracked request waits for its response before it is logged
+     * without one and forgotten.
+     */
+    public int getPendingResponseTtlSeconds() {
+        return pendingResponseTtlSeconds;
+    }
+
+    public void setPendingResponseTtlSeconds(int pendingResponseTtlSeconds) {
+        this.pendingResponseTtlSeconds = Math.max(10, Math.min(86400, pendingResponseTtlSeconds));
+    }
+
+    public LogLevel getLogLevel() {
+        return logLevel;
+    }
+
+    public void setLogLevel(LogLevel logLevel) {
+        this.logLevel = logLevel == null ? LogLevel.INFO : logLevel;
+    }
+
+    public int getSyntheticMaxConcurrency() {
+        return syntheticMaxConcurrency;
+    }
+
+    public void setSyntheticMaxConcurrency(int syntheticMaxConcurrency) {
+        this.syntheticMaxConcurrency = Math.max(1, Math.min(4096, syntheticMaxConcurrency));
+    }
+
+    public int getSyntheticPerHostConcurrency() {
+        return syntheticPerHostConcurrency;
+    }
+
+    public void setSyntheticPerHostConcurrency(int syntheticPerHostConcurrency) {
+        this.syntheticPerHostConcurrency = Math.max(1, Math.min(4096, syntheticPerHostConcurrency));
+    }
+
+    public int getSyntheticQueueCapacity() {
+        return syntheticQueueCapacity;
+    }
+
+    public void setSyntheticQueueCapacity(int syntheticQueueCapacity) {
+        this.syntheticQueueCapacity = Math.max(10, Math.min(100000, syntheticQueueCapacity));
+    }
+
+    public OverflowPolicy getSyntheticOverflowPolicy() {
+        return syntheticOverflowPolicy;
+    }
+
+    public void setSyntheticOverflowPolicy(OverflowPolicy syntheticOverflowPolicy) {
+        this.syntheticOverflowPolicy = syntheticOverflowPolicy == null ? OverflowPolicy.DROP_OLDEST
+                : syntheticOverflowPolicy;
+    }
+
+    /**
+     * Runs unauth and preview sends on virtual threads when the running JVM
+     * supports them (Java 21+). Ignored on older runtimes.
+     */
+    public boolean isSyntheticVirtualThreads() {
+        return syntheticVirtualThreads;
+    }
+
+    public void setSyntheticVirtualThreads(boolean syntheticVirtualThreads) {
+        this.syntheticVirtualThreads = syntheticVirtualThreads;
+    }
+
+    /**
+     * When set, the global concurrency limit follows observed latency and
+     * error rates, with {@link #getSyntheticMaxConcurrency()} as the ceiling.
+     */
+    public boolean isSyntheticAdaptiveConcurrency() {
+        return syntheticAdaptiveConcurrency;
+    }
+
+    public void setSyntheticAdaptiveConcurrency(boolean syntheticAdaptiveConcurrency) {
+        this.syntheticAdaptiveConcurrency = syntheticAdaptiveConcurrency;
+    }
+
+    /**
+     * Per-host limit on unauth and preview sends, in requests per second;
+     * 0 disables rate limiting.
+     */
+    public int getSyntheticRatePerSecond() {
+        return syntheticRatePerSecond;
+    }
+
+    public void setSyntheticRatePerSecond(int syntheticRatePerSecond) {
+        this.syntheticRatePerSecond = Math.max(0, Math.min(1000, syntheticRatePerSecond));
+    }
+
+    /**
+     * Requests a host may receive back to back before the rate limit applies.
+     */
+    public int getSyntheticRateBurst() {
+        return syntheticRateBurst;
+    }
+
+    public void setSyntheticRateBurst(int syntheticRateBurst) {
+        this.syntheticRateBurst = Math.max(1, Math.min(1000, syntheticRateBurst));
+    }
+
+    /**
+     * Response timeout of each unauth, preview or role matrix send.
+     */
+    public int getSyntheticTimeoutMillis() {
+        return syntheticTimeoutMillis;
+    }
+
+    public void setSyntheticTimeoutMillis(int syntheticTimeoutMillis) {
+        this.syntheticTimeoutMillis = Math.max(1000, Math.min(300000, syntheticTimeoutMillis));
+    }
+
+    /**
+     * Extra attempts after a connection error; timeouts are not retried.
+     */
+    public int getSyntheticMaxRetries() {
+        return syntheticMaxRetries;
+    }
+
+    public void setSyntheticMaxRetries(int syntheticMaxRetries) {
+        this.syntheticMaxRetries = Math.max(0, Math.min(5, syntheticMaxRetries));
+    }
+
+    /**
+     * Base delay before the first retry; later retries back off exponentially
+     * with random jitter.
+     */
+    public int getSyntheticRetryBackoffMillis() {
+        return syntheticRetryBackoffMillis;
+    }
+
+    public void setSyntheticRetryBackoffMillis(int syntheticRetryBackoffMillis) {
+        this.syntheticRetryBackoffMillis = Math.max(50, Math.min(10000, syntheticRetryBackoffMillis));
+    }
+
+    /**
+     * Comma separated tool names, most urgent first, deciding which queued
+     * unauth and preview sends start first. Unlisted tools go last.
+     */
+    public String getSyntheticToolPriority() {
+        return syntheticToolPriority;
+    }
+
+    public void setSyntheticToolPriority(String syntheticToolPriority) {
+        this.syntheticToolPriority = syntheticToolPriority == null || syntheticToolPriority.isBlank()
+                ? DEFAULT_SYNTHETIC_TOOL_PRIORITY
+                : syntheticToolPriority.trim();
+    }
+
+    /**
+     * Queueing delay that is worth one priority level; a job from a lower
+     * ranked tool runs before newer higher ranked jobs once it has waited this
+     * long per level of difference.
+     */
+    public int getSyntheticPriorityAgingMillis() {
+        return syntheticPriorityAgingMillis;
+    }
+
+    public void setSyntheticPriorityAgingMillis(int syntheticPriorityAgingMillis) {
+        this.syntheticPriorityAgingMillis = Math.max(0, Math.min(600000, syntheticPriorityAgingMillis));
+    }
+
+    /**
+     * How long an unauth response is reused for identical stripped requests;
+     * 0 sends every request.
+     */
+    public int getUnauthCacheTtlSeconds() {
+        return unauthCacheTtlSeconds;
+    }
+
+    public void setUnauthCacheTtlSeconds(int unauthCacheTtlSeconds) {
+        this.unauthCacheTtlSeconds = Math.max(0, Math.min(3600, unauthCacheTtlSeconds));
+    }
+
+    public int getUnauthCacheMaxEntries() {
+        return unauthCacheMaxEntries;
+    }
+
+    public void setUnauthCacheMaxEntries(int unauthCacheMaxEntries) {
+        this.unauthCacheMaxEntries = Math.max(10, Math.min(100000, unauthCacheMaxEntries));
+    }
+
+    /**
+     * Replays every tracked request once per enabled role and once without
+     * cookies, and shows the results side by side.
+     */
+    public boolean isRoleMatrix() {
+        return roleMatrix;
+    }
+
+    public void setRoleMatrix(boolean roleMatrix) {
+        this.roleMatrix = roleMatrix;
+    }
+
     public boolean isExcludeStaticFiles() {
         return excludeStaticFiles;
     }
@@ -143,6 +427,31 @@ public class ExtensionConfig {
         this.excludeStaticFiles = excludeStaticFiles;
     }
 
+    /**
+     * Comma separated list of file extensions treated as static when
+     * {@link #isExcludeStaticFiles()} is on.
+     */
+    public String getStaticFileExtensions() {
+        return staticFileExtensions;
+    }
+
+    public void setStaticFileExtensions(String staticFileExtensions) {
+        this.staticFileExtensions = staticFileExtensions == null ? "" : staticFileExtensions.trim();
+    }
+
+    /**
+     * When on, URLs whose responses had an image, font, media, CSS or script
+     * Content-Type are treated as static from their next request on, even if
+     * the path has no known extension.
+     */
+    public boolean isStaticContentTypeCheck() {
+        return staticContentTypeCheck;
+    }
+
+    public void setStaticContentTypeCheck(boolean staticContentTypeCheck) {
+        this.staticContentTypeCheck = staticContentTypeCheck;
+    }
+
     // Helper: should we apply to a given tool?
     public boolean isToolEnabled(ToolType toolType) {
         if (toolType == null) return false;
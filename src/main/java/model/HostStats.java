@@ -0,0 +1,38 @@
+package model;
+
+/**
+ * Synthetic request counters for one target host.
+ */
+public final class HostStats {
+    private final String host;
+    private final int queued;
+    private final int inFlight;
+    private final double tokens;
+
+    public HostStats(String host, int queued, int inFlight, double tokens) {
+        this.host = host;
+        this.queued = queued;
+        this.inFlight = inFlight;
+        this.tokens = tokens;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Tokens left in the host's rate-limit bucket, or -1 when rate limiting
+     * is off.
+     */
+    public double getTokens() {
+        return tokens;
+    }
+}
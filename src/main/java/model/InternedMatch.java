@@ -0,0 +1,34 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Caches a name predicate per interned id, so a filter over thousands of
+ * rows evaluates it once per distinct role or method.
+ */
+final class InternedMatch {
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+
+    private final BiFunction<LogColumns, Integer, String> names;
+    private final Predicate<String> predicate;
+    private byte[] results = new byte[8];
+
+    InternedMatch(BiFunction<LogColumns, Integer, String> names, Predicate<String> predicate) {
+        this.names = names;
+        this.predicate = predicate;
+    }
+
+    boolean test(LogColumns columns, int id) {
+        if (id >= results.length) {
+            results = Arrays.copyOf(results, Math.max(id + 1, results.length * 2));
+        }
+        if (results[id] == UNKNOWN) {
+            results[id] = predicate.test(names.apply(columns, id)) ? MATCH : NO_MATCH;
+        }
+        return results[id] == MATCH;
+    }
+}
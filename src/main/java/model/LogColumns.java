@@ -0,0 +1,220 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-wise copy of the values the log table sorts and filters on, one
+ * primitive array per value, addressed by the same row index as
+ * {@link RequestLogModel}.
+ * <p>
+ * Comparing two rows reads two array slots instead of calling entry getters
+ * and boxing their results, so sorting or filtering the whole log is a loop
+ * over a few contiguous arrays. Roles and methods are interned to small ids;
+ * their names are never forgotten, which is fine for the handful a log ever
+ * sees. Like {@link RingBuffer} the arrays are circular, so dropping the
+ * oldest rows never shifts the rest. Only {@link RequestLogModel} changes it,
+ * always on the EDT.
+ */
+public final class LogColumns {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Interner roles = new Interner();
+    private final Interner methods = new Interner();
+    private int head;
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] roleIds = new int[INITIAL_CAPACITY];
+    private int[] methodIds = new int[INITIAL_CAPACITY];
+    private int[] statusCodes = new int[INITIAL_CAPACITY];
+    private int[] originalStatuses = new int[INITIAL_CAPACITY];
+    private int[] modifiedStatuses = new int[INITIAL_CAPACITY];
+    private int[] cookieCounts = new int[INITIAL_CAPACITY];
+    private int[] parameterCounts = new int[INITIAL_CAPACITY];
+    private boolean[] unauthenticatedTesting = new boolean[INITIAL_CAPACITY];
+    private String[] urls = new String[INITIAL_CAPACITY];
+
+    public int id(int row) {
+        return ids[physical(row)];
+    }
+
+    public int roleId(int row) {
+        return roleIds[physical(row)];
+    }
+
+    /** Position of the row's role among all role names in natural order. */
+    public int roleRank(int row) {
+        return roles.rank(roleId(row));
+    }
+
+    public String roleName(int roleId) {
+        return roles.name(roleId);
+    }
+
+    public int methodId(int row) {
+        return methodIds[physical(row)];
+    }
+
+    /** Position of the row's method among all method names in natural order. */
+    public int methodRank(int row) {
+        return methods.rank(methodId(row));
+    }
+
+    public String methodName(int methodId) {
+        return methods.name(methodId);
+    }
+
+    public String url(int row) {
+        return urls[physical(row)];
+    }
+
+    /** Status shown for the row, 0 when no response arrived. */
+    public int statusCode(int row) {
+        return statusCodes[physical(row)];
+    }
+
+    /** See {@link RequestLogEntry#originalStatus()}. */
+    public int originalStatus(int row) {
+        return originalStatuses[physical(row)];
+    }
+
+    /** See {@link RequestLogEntry#modifiedStatus()}. */
+    public int modifiedStatus(int row) {
+        return modifiedStatuses[physical(row)];
+    }
+
+    public int cookieCount(int row) {
+        return cookieCounts[physical(row)];
+    }
+
+    public int parameterCount(int row) {
+        return parameterCounts[physical(row)];
+    }
+
+    public boolean isUnauthenticatedTesting(int row) {
+        return unauthenticatedTesting[physical(row)];
+    }
+
+    void add(RequestLogEntry entry) {
+        if (size == ids.length) {
+            grow();
+        }
+        size++;
+        write(physical(size - 1), entry);
+    }
+
+    void set(int row, RequestLogEntry entry) {
+        write(physical(row), entry);
+    }
+
+    /** Drops the {@code count} oldest rows. */
+    void removeFirst(int count) {
+        int n = Math.min(count, size);
+        for (int i = 0; i < n; i++) {
+            urls[(head + i) & mask()] = null;
+        }
+        head = (head + n) & mask();
+        size -= n;
+        if (size == 0) {
+            head = 0;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(urls, null);
+        head = 0;
+        size = 0;
+    }
+
+    private void write(int slot, RequestLogEntry entry) {
+        ids[slot] = entry.getId();
+        roleIds[slot] = roles.intern(entry.getAppliedRole());
+        methodIds[slot] = methods.intern(entry.getMethod());
+        urls[slot] = entry.getUrl();
+        statusCodes[slot] = entry.getStatusCode();
+        originalStatuses[slot] = entry.originalStatus();
+        modifiedStatuses[slot] = entry.modifiedStatus();
+        cookieCounts[slot] = entry.getCookieCount();
+        parameterCounts[slot] = entry.getParameterCount();
+        unauthenticatedTesting[slot] = entry.isUnauthenticatedTesting();
+    }
+
+    /** Capacity is always a power of two, so wrapping is a mask. */
+    private int mask() {
+        return ids.length - 1;
+    }
+
+    private int physical(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index " + row + " out of bounds for length " + size);
+        }
+        return (head + row) & mask();
+    }
+
+    /** Doubles every array and unwraps it so the oldest row is at slot 0. */
+    private void grow() {
+        int length = ids.length;
+        int capacity = length * 2;
+        ids = unwrap(ids, new int[capacity], length);
+        roleIds = unwrap(roleIds, new int[capacity], length);
+        methodIds = unwrap(methodIds, new int[capacity], length);
+        statusCodes = unwrap(statusCodes, new int[capacity], length);
+        originalStatuses = unwrap(originalStatuses, new int[capacity], length);
+        modifiedStatuses = unwrap(modifiedStatuses, new int[capacity], length);
+        cookieCounts = unwrap(cookieCounts, new int[capacity], length);
+        parameterCounts = unwrap(parameterCounts, new int[capacity], length);
+        unauthenticatedTesting = unwrap(unauthenticatedTesting, new boolean[capacity], length);
+        urls = unwrap(urls, new String[capacity], length);
+        head = 0;
+    }
+
+    private <A> A unwrap(A from, A to, int length) {
+        int firstPart = Math.min(size, length - head);
+        System.arraycopy(from, head, to, 0, firstPart);
+        System.arraycopy(from, 0, to, firstPart, size - firstPart);
+        return to;
+    }
+
+    /**
+     * Maps names to dense ids, and ids to their rank in natural name order
+     * for sorting. Ranks are recomputed only after a new name was added.
+     */
+    private static final class Interner {
+        private final Map<String, Integer> idsByName = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private int[] ranks = new int[0];
+
+        int intern(String name) {
+            String key = name == null ? "" : name;
+            Integer id = idsByName.get(key);
+            if (id == null) {
+                id = names.size();
+                idsByName.put(key, id);
+                names.add(key);
+            }
+            return id;
+        }
+
+        String name(int id) {
+            return names.get(id);
+        }
+
+        int rank(int id) {
+            if (ranks.length != names.size()) {
+                Integer[] order = new Integer[names.size()];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> names.get(a).compareTo(names.get(b)));
+                ranks = new int[order.length];
+                for (int position = 0; position < order.length; position++) {
+                    ranks[order[position]] = position;
+                }
+            }
+            return ranks[id];
+        }
+    }
+}
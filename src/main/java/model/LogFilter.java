@@ -0,0 +1,51 @@
+package model;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Row filter for the log table that reads {@link LogColumns} instead of cell
+ * values, so filtering the whole log is a loop over primitive arrays.
+ */
+@FunctionalInterface
+public interface LogFilter {
+    boolean include(LogColumns columns, int row);
+
+    /** Rows accepted by every one of {@code filters}. */
+    static LogFilter all(List<LogFilter> filters) {
+        LogFilter[] array = filters.toArray(new LogFilter[0]);
+        return (columns, row) -> {
+            for (LogFilter filter : array) {
+                if (!filter.include(columns, row)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    static LogFilter idIs(int id) {
+        return (columns, row) -> columns.id(row) == id;
+    }
+
+    /** Rows whose role name matches; each distinct role is tested once. */
+    static LogFilter roleMatches(Predicate<String> predicate) {
+        InternedMatch match = new InternedMatch(LogColumns::roleName, predicate);
+        return (columns, row) -> match.test(columns, columns.roleId(row));
+    }
+
+    static LogFilter methodIs(String method) {
+        InternedMatch match = new InternedMatch(LogColumns::methodName, method::equals);
+        return (columns, row) -> match.test(columns, columns.methodId(row));
+    }
+
+    /** Rows whose shown status is in the given class, e.g. 4 for 4xx. */
+    static LogFilter statusClass(int hundreds) {
+        return (columns, row) -> columns.statusCode(row) / 100 == hundreds;
+    }
+
+    static LogFilter urlMatches(Pattern pattern) {
+        return (columns, row) -> pattern.matcher(columns.url(row)).find();
+    }
+}
@@ -0,0 +1,23 @@
+package model;
+
+public enum LogLevel {
+    OFF("Off"),
+    INFO("Info"),
+    DEBUG("Debug"),
+    TRACE("Trace");
+
+    private final String label;
+
+    LogLevel(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
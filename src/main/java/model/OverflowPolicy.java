@@ -0,0 +1,25 @@
+package model;
+
+/**
+ * What the synthetic request queue does when it is full.
+ */
+public enum OverflowPolicy {
+    DROP_OLDEST("Drop oldest"),
+    DROP_NEW("Drop new"),
+    BLOCK("Block caller");
+
+    private final String label;
+
+    OverflowPolicy(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
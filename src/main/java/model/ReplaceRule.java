@@ -2,6 +2,7 @@ package model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 public class ReplaceRule {
@@ -9,6 +10,9 @@ public class ReplaceRule {
     private boolean enabled;
     private final List<ReplaceOperation> operations;
     private String targetRole;
+    private String hostPattern;
+    private String pathPrefix;
+    private String method;
 
     public enum OperationType {
         REQUEST_STRING("Request String", true, true, true, true, true, false),
@@ -86,6 +90,9 @@ public class ReplaceRule {
         this.enabled = true;
         this.operations = new ArrayList<>();
         this.targetRole = ""; // Initialized
+        this.hostPattern = "";
+        this.pathPrefix = "";
+        this.method = "";
     }
 
     // Getters and setters
@@ -97,6 +104,60 @@ public class ReplaceRule {
         this.targetRole = targetRole;
     }
 
+    /**
+     * Host glob the rule is limited to ({@code *} and {@code ?} wildcards,
+     * case-insensitive). Empty matches every host.
+     */
+    public String getHostPattern() {
+        return hostPattern;
+    }
+
+    public void setHostPattern(String hostPattern) {
+        this.hostPattern = hostPattern == null ? "" : hostPattern.trim();
+    }
+
+    /**
+     * Path prefix the rule is limited to, compared against the request path
+     * without its query string. Empty matches every path.
+     */
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    public void setPathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix == null ? "" : pathPrefix.trim();
+    }
+
+    /**
+     * HTTP method the rule is limited to. Empty matches every method.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method == null ? "" : method.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public boolean isScoped() {
+        return !hostPattern.isEmpty() || !pathPrefix.isEmpty() || !method.isEmpty();
+    }
+
+    public String describeScope() {
+        if (!isScoped()) {
+            return "All requests";
+        }
+        StringBuilder scope = new StringBuilder();
+        if (!method.isEmpty()) {
+            scope.append(method).append(' ');
+        }
+        scope.append(hostPattern.isEmpty() ? "*" : hostPattern);
+        if (!pathPrefix.isEmpty()) {
+            scope.append(pathPrefix).append('*');
+        }
+        return scope.toString();
+    }
+
     public String getName() {
         return name;
     }
@@ -1,13 +1,43 @@
 package model;
 
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.params.HttpParameterType;
+import burp.api.montoya.http.message.params.ParsedHttpParameter;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
+import util.ContentFingerprint;
+import util.MessageStorage;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One row of the request log.
+ * <p>
+ * The requests and responses are held on the heap when the entry is created.
+ * {@link #spillTo(MessageStorage)} moves their bytes, and those of the role
+ * matrix cells, to disk or into compressed heap storage, after which the
+ * getters rebuild them on every call and the entry itself only keeps the row
+ * data.
+ * <p>
+ * Everything the table shows is computed once when the entry is built and
+ * kept in primitive fields, so painting or sorting rows never parses a message
+ * or loads one back from storage.
+ */
 public class RequestLogEntry {
+    /** Status of a response that is not there. */
+    public static final int NO_STATUS = -1;
+
     private final int id;
     private final String method;
     private final String url;
     private final int statusCode;
+    private final int originalStatus;
+    private final int modifiedStatus;
+    private final int unauthStatus;
+    private final int cookieCount;
+    private final int parameterCount;
     private final HttpRequest originalRequest;
     private final HttpRequest modifiedRequest;
     private final HttpRequest unauthRequest;
@@ -20,6 +50,9 @@ public class RequestLogEntry {
     private final boolean modifiedRequestSent;
     private final String notes;
     private final String appliedRole;
+    private final List<RoleResult> roleResults;
+    /** Messages moved to disk, or null while everything is on the heap. */
+    private final StoredMessages stored;
 
     public RequestLogEntry(int id, HttpRequest originalRequest, HttpRequest modifiedRequest,
             HttpResponse originalResponse, HttpResponse modifiedResponse,
@@ -40,14 +73,179 @@ public class RequestLogEntry {
         this.modifiedResponse = modifiedResponse;
         this.unauthResponse = unauthResponse;
         this.modifiedRequestSent = modifiedRequestSent;
+        this.stored = null;
         this.method = originalRequest.method();
         this.url = originalRequest.url();
+        this.originalStatus = statusOf(originalResponse);
+        this.modifiedStatus = statusOf(modifiedResponse);
+        this.unauthStatus = statusOf(unauthResponse);
         this.statusCode = computePrimaryStatusCode();
+        HttpRequest sent = modifiedRequestSent && modifiedRequest != null ? modifiedRequest : originalRequest;
+        List<ParsedHttpParameter> parameters = sent.parameters();
+        this.cookieCount = countCookies(parameters);
+        this.parameterCount = parameters.size();
         this.timestamp = System.currentTimeMillis();
-        this.wasModified = modifiedRequest != null && !originalRequest.toString().equals(modifiedRequest.toString());
+        this.wasModified = ContentFingerprint.differ(originalRequest, modifiedRequest);
+        this.unauthenticatedTesting = unauthenticatedTesting;
+        this.notes = notes == null ? "" : notes;
+        this.appliedRole = appliedRole == null ? "" : appliedRole;
+        this.roleResults = List.of();
+    }
+
+    private RequestLogEntry(RequestLogEntry base, HttpRequest originalRequest, HttpRequest modifiedRequest,
+            HttpRequest unauthRequest, HttpResponse originalResponse, HttpResponse modifiedResponse,
+            HttpResponse unauthResponse, StoredMessages stored, boolean unauthenticatedTesting, String notes,
+            String appliedRole, List<RoleResult> roleResults) {
+        this.id = base.id;
+        this.originalRequest = originalRequest;
+        this.modifiedRequest = modifiedRequest;
+        this.unauthRequest = unauthRequest;
+        this.stored = stored;
+        this.originalResponse = originalResponse;
+        this.modifiedResponse = modifiedResponse;
+        this.unauthResponse = unauthResponse;
+        this.modifiedRequestSent = base.modifiedRequestSent;
+        this.method = base.method;
+        this.url = base.url;
+        this.originalStatus = carryStatus(originalResponse, base.originalResponse, base.originalStatus,
+                StoredMessages.ORIGINAL_RESPONSE);
+        this.modifiedStatus = carryStatus(modifiedResponse, base.modifiedResponse, base.modifiedStatus,
+                StoredMessages.MODIFIED_RESPONSE);
+        this.unauthStatus = carryStatus(unauthResponse, base.unauthResponse, base.unauthStatus,
+                StoredMessages.UNAUTH_RESPONSE);
+        this.statusCode = computePrimaryStatusCode();
+        // The requests never change between copies, only where they are kept
+        this.cookieCount = base.cookieCount;
+        this.parameterCount = base.parameterCount;
+        this.timestamp = base.timestamp;
+        this.wasModified = base.wasModified;
         this.unauthenticatedTesting = unauthenticatedTesting;
         this.notes = notes == null ? "" : notes;
         this.appliedRole = appliedRole == null ? "" : appliedRole;
+        this.roleResults = roleResults;
+    }
+
+    /**
+     * Returns a copy of this entry with the given responses. The requests and
+     * the already computed modification flag are carried over unchanged.
+     */
+    public RequestLogEntry withResponses(HttpResponse originalResponse, HttpResponse modifiedResponse,
+            HttpResponse unauthResponse, boolean unauthenticatedTesting, String appliedRole) {
+        return new RequestLogEntry(this, this.originalRequest, this.modifiedRequest, this.unauthRequest,
+                originalResponse, modifiedResponse, unauthResponse,
+                stored != null ? stored.requestsOnly() : null,
+                unauthenticatedTesting, notes, appliedRole, roleResults);
+    }
+
+    /**
+     * Returns a copy of this entry with the given notes.
+     */
+    public RequestLogEntry withNotes(String notes) {
+        return new RequestLogEntry(this, originalRequest, modifiedRequest, unauthRequest,
+                originalResponse, modifiedResponse, unauthResponse, stored,
+                unauthenticatedTesting, notes, appliedRole, roleResults);
+    }
+
+    /**
+     * Returns a copy of this entry carrying the given role matrix results.
+     */
+    public RequestLogEntry withRoleResults(List<RoleResult> roleResults) {
+        return new RequestLogEntry(this, originalRequest, modifiedRequest, unauthRequest,
+                originalResponse, modifiedResponse, unauthResponse, stored,
+                unauthenticatedTesting, notes, appliedRole,
+                roleResults == null ? List.of() : List.copyOf(roleResults));
+    }
+
+    /**
+     * Returns a copy of this entry whose messages live in {@code store}
+     * instead of on the heap. Messages the store cannot take stay on the heap.
+     * Returns this entry when there is nothing to move.
+     */
+    public RequestLogEntry spillTo(MessageStorage store) {
+        if (store == null || (stored != null && stored.store() != store)) {
+            return this;
+        }
+        HttpRequest[] requests = { originalRequest, modifiedRequest, unauthRequest };
+        HttpResponse[] responses = { originalResponse, modifiedResponse, unauthResponse };
+        boolean onHeap = false;
+        for (int i = 0; i < 3; i++) {
+            onHeap |= requests[i] != null || responses[i] != null;
+        }
+        if (!onHeap) {
+            List<RoleResult> spilledRoles = spillRoleResults(store);
+            return spilledRoles == roleResults ? this
+                    : new RequestLogEntry(this, null, null, null, null, null, null, stored,
+                            unauthenticatedTesting, notes, appliedRole, spilledRoles);
+        }
+
+        long[] handles = stored != null ? storedHandles() : StoredMessages.emptyHandles();
+        HttpService service = stored != null ? stored.service() : null;
+        try {
+            for (int i = 0; i < 3; i++) {
+                if (requests[i] != null) {
+                    if (service == null) {
+                        service = requests[i].httpService();
+                    }
+                    handles[StoredMessages.ORIGINAL_REQUEST + i] = store.append(requests[i].toByteArray().getBytes());
+                    if (handles[StoredMessages.ORIGINAL_REQUEST + i] != MessageStorage.NONE) {
+                        requests[i] = null;
+                    }
+                }
+                int slot = StoredMessages.ORIGINAL_RESPONSE + i;
+                if (responses[i] != null) {
+                    handles[slot] = store.append(responses[i].toByteArray().getBytes());
+                    if (handles[slot] != MessageStorage.NONE) {
+                        responses[i] = null;
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // Disk trouble: release what was written and keep the entry as is
+            new StoredMessages(store, service, handles).releaseUnless(stored);
+            return this;
+        }
+
+        StoredMessages spilled = new StoredMessages(store, service, handles);
+        return new RequestLogEntry(this, requests[0], requests[1], requests[2],
+                responses[0], responses[1], responses[2], spilled,
+                unauthenticatedTesting, notes, appliedRole, spillRoleResults(store));
+    }
+
+    /** The role matrix cells moved to {@code store}, or the same list when none moved. */
+    private List<RoleResult> spillRoleResults(MessageStorage store) {
+        List<RoleResult> spilled = null;
+        for (int i = 0; i < roleResults.size(); i++) {
+            RoleResult result = roleResults.get(i);
+            RoleResult moved = result.spillTo(store);
+            if (moved != result && spilled == null) {
+                spilled = new ArrayList<>(roleResults.subList(0, i));
+            }
+            if (spilled != null) {
+                spilled.add(moved);
+            }
+        }
+        return spilled != null ? List.copyOf(spilled) : roleResults;
+    }
+
+    /**
+     * Frees the disk space of messages that {@code successor} no longer
+     * refers to. Called when this entry is replaced or dropped from the log.
+     */
+    public void releaseStorage(RequestLogEntry successor) {
+        if (stored != null) {
+            stored.releaseUnless(successor != null ? successor.stored : null);
+        }
+        for (RoleResult result : roleResults) {
+            result.releaseStorage(successor != null ? successor.getRoleResult(result.getRole()) : null);
+        }
+    }
+
+    private long[] storedHandles() {
+        long[] handles = new long[StoredMessages.SLOTS];
+        for (int slot = 0; slot < StoredMessages.SLOTS; slot++) {
+            handles[slot] = stored.handle(slot);
+        }
+        return handles;
     }
 
     public RequestLogEntry(int id, HttpRequest originalRequest, HttpRequest modifiedRequest,
@@ -82,49 +280,56 @@ public class RequestLogEntry {
     }
 
     public Integer getOriginalStatusCode() {
-        return originalResponse != null ? (int) originalResponse.statusCode() : null;
+        return originalStatus != NO_STATUS ? originalStatus : null;
     }
 
     public Integer getModifiedStatusCode() {
-        return modifiedResponse != null ? (int) modifiedResponse.statusCode() : null;
+        return modifiedStatus != NO_STATUS ? modifiedStatus : null;
+    }
+
+    /** Status of the original response, or {@link #NO_STATUS}. */
+    public int originalStatus() {
+        return originalStatus;
+    }
+
+    /** Status of the modified response, or {@link #NO_STATUS}. */
+    public int modifiedStatus() {
+        return modifiedStatus;
     }
 
     public HttpRequest getRequest() {
-        if (modifiedRequestSent && modifiedRequest != null) {
-            return modifiedRequest;
+        if (modifiedRequestSent && has(modifiedRequest, StoredMessages.MODIFIED_REQUEST)) {
+            return getModifiedRequest();
         }
-        return originalRequest;
+        return getOriginalRequest();
     }
 
     public HttpRequest getOriginalRequest() {
-        return originalRequest;
+        return originalRequest != null ? originalRequest : load(StoredMessages.ORIGINAL_REQUEST);
     }
 
     public HttpRequest getModifiedRequest() {
-        return modifiedRequest;
+        return modifiedRequest != null ? modifiedRequest : load(StoredMessages.MODIFIED_REQUEST);
     }
 
     public HttpRequest getUnauthRequest() {
-        return unauthRequest;
+        return unauthRequest != null ? unauthRequest : load(StoredMessages.UNAUTH_REQUEST);
     }
 
     public HttpResponse getResponse() {
-        if (modifiedRequestSent && modifiedResponse != null) {
-            return modifiedResponse;
-        }
-        return originalResponse != null ? originalResponse : modifiedResponse;
+        return responseSlot() == StoredMessages.ORIGINAL_RESPONSE ? getOriginalResponse() : getModifiedResponse();
     }
 
     public HttpResponse getOriginalResponse() {
-        return originalResponse;
+        return originalResponse != null ? originalResponse : loadResponse(StoredMessages.ORIGINAL_RESPONSE);
     }
 
     public HttpResponse getModifiedResponse() {
-        return modifiedResponse;
+        return modifiedResponse != null ? modifiedResponse : loadResponse(StoredMessages.MODIFIED_RESPONSE);
     }
 
     public HttpResponse getUnauthResponse() {
-        return unauthResponse;
+        return unauthResponse != null ? unauthResponse : loadResponse(StoredMessages.UNAUTH_RESPONSE);
     }
 
     public boolean wasModified() {
@@ -143,37 +348,99 @@ public class RequestLogEntry {
         return modifiedRequestSent;
     }
 
+    public int getCookieCount() {
+        return cookieCount;
+    }
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
     public String getCookieSummary() {
-        HttpRequest req = getRequest();
-        long cookieCount = req.parameters().stream()
-                .filter(p -> p.type() == burp.api.montoya.http.message.params.HttpParameterType.COOKIE)
-                .count();
         return cookieCount == 0 ? "None" : cookieCount + " cookie(s)";
     }
 
     public String getParameterSummary() {
-        HttpRequest req = getRequest();
-        int count = req.parameters().size();
-        return count == 0 ? "None" : count + " param(s)";
+        return parameterCount == 0 ? "None" : parameterCount + " param(s)";
+    }
+
+    private static int countCookies(List<ParsedHttpParameter> parameters) {
+        int count = 0;
+        for (ParsedHttpParameter parameter : parameters) {
+            if (parameter.type() == HttpParameterType.COOKIE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Per-role replays of this request when role matrix mode was on; empty
+     * otherwise.
+     */
+    public List<RoleResult> getRoleResults() {
+        return roleResults;
+    }
+
+    public RoleResult getRoleResult(String role) {
+        for (RoleResult result : roleResults) {
+            if (result.getRole().equals(role)) {
+                return result;
+            }
+        }
+        return null;
     }
 
     public Integer getUnauthStatusCode() {
-        return unauthResponse != null ? (int) unauthResponse.statusCode() : null;
+        return unauthStatus != NO_STATUS ? unauthStatus : null;
     }
 
     private int computePrimaryStatusCode() {
-        if (modifiedRequestSent && modifiedResponse != null) {
-            return modifiedResponse.statusCode();
+        if (modifiedRequestSent && modifiedStatus != NO_STATUS) {
+            return modifiedStatus;
         }
-        if (originalResponse != null) {
-            return originalResponse.statusCode();
+        if (originalStatus != NO_STATUS) {
+            return originalStatus;
         }
-        if (!modifiedRequestSent && modifiedResponse != null) {
-            return modifiedResponse.statusCode();
+        if (modifiedStatus != NO_STATUS) {
+            return modifiedStatus;
         }
-        if (unauthResponse != null) {
-            return unauthResponse.statusCode();
+        return unauthStatus != NO_STATUS ? unauthStatus : 0;
+    }
+
+    /** Slot of the response {@link #getResponse()} returns. */
+    private int responseSlot() {
+        if (modifiedRequestSent && modifiedStatus != NO_STATUS) {
+            return StoredMessages.MODIFIED_RESPONSE;
         }
-        return 0;
+        return originalStatus != NO_STATUS ? StoredMessages.ORIGINAL_RESPONSE : StoredMessages.MODIFIED_RESPONSE;
+    }
+
+    private static int statusOf(HttpResponse response) {
+        return response != null ? response.statusCode() : NO_STATUS;
+    }
+
+    /**
+     * Status of a response in a copy of an entry: read from the response only
+     * when it is new, kept from the base while the same response is carried
+     * over on the heap or in storage.
+     */
+    private int carryStatus(HttpResponse response, HttpResponse baseResponse, int baseStatus, int slot) {
+        if (response == null) {
+            return stored != null && stored.has(slot) ? baseStatus : NO_STATUS;
+        }
+        return response == baseResponse ? baseStatus : response.statusCode();
+    }
+
+    private boolean has(Object heap, int slot) {
+        return heap != null || (stored != null && stored.has(slot));
+    }
+
+    private HttpRequest load(int slot) {
+        return stored != null ? stored.request(slot) : null;
+    }
+
+    private HttpResponse loadResponse(int slot) {
+        return stored != null ? stored.response(slot) : null;
     }
 }
@@ -1,38 +1,74 @@
 package model;
 
+import util.MessageStorage;
+
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
+/**
+ * Table model of logged requests, oldest first.
+ * <p>
+ * Entries live in a {@link RingBuffer}, so dropping the oldest rows once
+ * {@link #getMaxEntries()} is exceeded does not shift the rest. Eviction
+ * works in blocks of {@link #EVICTION_BLOCK_RATIO} of the limit and fires a
+ * single table event per block, which keeps large limits from flooding the
+ * EDT with one event per insert.
+ * <p>
+ * An id to sequence index, kept in step with inserts, evictions and clears,
+ * makes {@link #findById(int)}, {@link #replaceById} and {@link #updateById}
+ * constant time instead of a scan over every row.
+ * <p>
+ * With a {@link MessageStorage} set, only the newest {@link #HOT_ENTRIES} rows
+ * keep their messages on the heap, where responses still arrive and the user
+ * usually looks. Older rows are {@linkplain RequestLogEntry#spillTo spilled}
+ * to the store and load their messages when selected. With the disk store the
+ * retention limit is bounded by disk rather than heap; the compressed store
+ * keeps several times more rows in the same heap.
+ * <p>
+ * A {@link LogColumns} store mirrors the sortable values of every row in
+ * primitive arrays, updated in the same EDT task as the entries, so the table
+ * sorter never has to go through {@link #getValueAt}.
+ */
 public class RequestLogModel extends AbstractTableModel {
-    private final List<RequestLogEntry> entries;
+    /** Share of the limit dropped at once when the log overflows. */
+    private static final double EVICTION_BLOCK_RATIO = 0.01;
+    /** Newest rows kept fully on the heap while a message store is set. */
+    private static final int HOT_ENTRIES = 500;
+
+    private final RingBuffer<RequestLogEntry> entries;
+    private final Map<Integer, Long> sequenceById = new HashMap<>();
+    private final LogColumns columns = new LogColumns();
     private final String[] columnNames = { "ID", "User Role", "Method", "URL", "Original Status Code",
             "Modified Status Code", "Cookies", "Parameters" };
     private boolean showUnauthColumn;
+    private List<String> matrixRoles = List.of();
     private int maxEntries = 1000;
+    private Consumer<List<Integer>> evictionListener;
+    private MessageStorage messageStore;
 
     public RequestLogModel() {
-        this.entries = new ArrayList<>();
+        this.entries = new RingBuffer<>();
     }
 
     public void addEntry(RequestLogEntry entry) {
-        javax.swing.SwingUtilities.invokeLater(() -> {
-            System.out.println(">>> ADDING ENTRY TO TABLE - ID: " + entry.getId() +
-                    ", URL: " + entry.getUrl() +
-                    ", modifiedResponse: " + (entry.getModifiedResponse() != null ? "present" : "NULL") +
-                    ", originalResponse: " + (entry.getOriginalResponse() != null ? "present" : "NULL"));
-            int row = entries.size();
-            entries.add(entry);
-            fireTableRowsInserted(row, row);
-            enforceLimit();
-        });
+        javax.swing.SwingUtilities.invokeLater(() -> addEntryInternal(entry));
     }
 
     public void clearEntries() {
         javax.swing.SwingUtilities.invokeLater(() -> {
             int size = entries.size();
             if (size > 0) {
+                for (int i = 0; i < size; i++) {
+                    entries.get(i).releaseStorage(null);
+                }
                 entries.clear();
+                sequenceById.clear();
+                columns.clear();
                 fireTableRowsDeleted(0, size - 1);
             }
         });
@@ -46,37 +82,139 @@ public class RequestLogModel extends AbstractTableModel {
     }
 
     public List<RequestLogEntry> getAllEntries() {
-        return new ArrayList<>(entries);
+        return entries.toList();
     }
 
     public void replaceById(int id, RequestLogEntry updated) {
         javax.swing.SwingUtilities.invokeLater(() -> {
-            for (int i = 0; i < entries.size(); i++) {
-                if (entries.get(i).getId() == id) {
-                    entries.set(i, updated);
-                    fireTableRowsUpdated(i, i);
-                    return;
-                }
+            int row = rowOf(id);
+            if (row >= 0) {
+                setRow(row, updated);
+                fireTableRowsUpdated(row, row);
+                return;
             }
             // If not found, append (already wrapped in invokeLater in addEntry)
             addEntryInternal(updated);
         });
     }
 
+    /**
+     * Replaces the entry with the given id by {@code update} applied to its
+     * current value. The lookup and the replacement happen in one EDT task, so
+     * concurrent updates to different fields of the same entry don't overwrite
+     * each other.
+     */
+    public void updateById(int id, UnaryOperator<RequestLogEntry> update) {
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            int row = rowOf(id);
+            if (row >= 0) {
+                setRow(row, update.apply(entries.get(row)));
+                fireTableRowsUpdated(row, row);
+            }
+        });
+    }
+
     private void addEntryInternal(RequestLogEntry entry) {
         int row = entries.size();
-        entries.add(entry);
+        sequenceById.put(entry.getId(), entries.add(entry));
+        columns.add(entry);
         fireTableRowsInserted(row, row);
+        spillIfCold(row - HOT_ENTRIES);
         enforceLimit();
     }
 
-    public RequestLogEntry findById(int id) {
-        for (RequestLogEntry entry : entries) {
-            if (entry.getId() == id) {
-                return entry;
+    /**
+     * Replaces a row, moving the new entry to the message store if the row
+     * is cold, and frees the stored messages the old entry no longer shares.
+     */
+    private void setRow(int row, RequestLogEntry updated) {
+        RequestLogEntry previous = entries.get(row);
+        RequestLogEntry next = isCold(row) ? updated.spillTo(messageStore) : updated;
+        entries.set(row, next);
+        columns.set(row, next);
+        if (previous != next) {
+            previous.releaseStorage(next);
+        }
+    }
+
+    private boolean isCold(int row) {
+        return messageStore != null && row < entries.size() - HOT_ENTRIES;
+    }
+
+    private void spillIfCold(int row) {
+        if (row >= 0 && isCold(row)) {
+            RequestLogEntry entry = entries.get(row);
+            RequestLogEntry spilled = entry.spillTo(messageStore);
+            if (spilled != entry) {
+                entries.set(row, spilled);
+                entry.releaseStorage(spilled);
             }
         }
-        return null;
+    }
+
+    /**
+     * Keeps the messages of all but the newest rows in {@code store}, or
+     * stops moving new rows there when null. Rows already moved stay readable
+     * for as long as the store is open.
+     */
+    public void setMessageStore(MessageStorage store) {
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            this.messageStore = store;
+            if (store != null) {
+                for (int row = 0; row < entries.size() - HOT_ENTRIES; row++) {
+                    spillIfCold(row);
+                }
+            }
+        });
+    }
+
+    public RequestLogEntry findById(int id) {
+        int row = rowOf(id);
+        return row >= 0 ? entries.get(row) : null;
+    }
+
+    /**
+     * Primitive copy of the sortable row values, indexed like the rows of
+     * this model. Read it on the EDT only.
+     */
+    public LogColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * True when {@link #sortKey} orders the given column the same way its
+     * cell values do. Other columns have to be compared by value.
+     */
+    public boolean hasSortKey(int column) {
+        if (column < columnNames.length) {
+            return column != 3;
+        }
+        return getMatrixRole(column) == null;
+    }
+
+    /**
+     * Integer that orders the given cell within its column, read from
+     * {@link LogColumns}. Missing statuses sort after all others.
+     */
+    public int sortKey(int row, int column) {
+        return switch (column) {
+            case 0 -> columns.id(row);
+            case 1 -> columns.roleRank(row);
+            case 2 -> columns.methodRank(row);
+            case 4 -> columns.originalStatus(row) != RequestLogEntry.NO_STATUS
+                    ? columns.originalStatus(row) : columns.statusCode(row);
+            case 5 -> columns.modifiedStatus(row) != RequestLogEntry.NO_STATUS
+                    ? columns.modifiedStatus(row) : Integer.MAX_VALUE;
+            case 6 -> columns.cookieCount(row);
+            case 7 -> columns.parameterCount(row);
+            default -> columns.isUnauthenticatedTesting(row) ? 1 : 0;
+        };
+    }
+
+    /** Current row of the entry with the given id, or -1. */
+    private int rowOf(int id) {
+        Long sequence = sequenceById.get(id);
+        return sequence != null ? entries.indexOf(sequence) : -1;
     }
 
     @Override
@@ -86,7 +224,7 @@ public class RequestLogModel extends AbstractTableModel {
 
     @Override
     public int getColumnCount() {
-        return columnNames.length + (showUnauthColumn ? 1 : 0);
+        return matrixStart() + matrixRoles.size();
     }
 
     @Override
@@ -94,19 +232,37 @@ public class RequestLogModel extends AbstractTableModel {
         if (column < columnNames.length) {
             return columnNames[column];
         }
-        return "Unauth";
+        String role = getMatrixRole(column);
+        return role != null ? role : "Unauth";
+    }
+
+    /**
+     * Role shown in the given role matrix column, or null for other columns.
+     */
+    public String getMatrixRole(int column) {
+        int index = column - matrixStart();
+        return index >= 0 && index < matrixRoles.size() ? matrixRoles.get(index) : null;
+    }
+
+    private int matrixStart() {
+        return columnNames.length + (showUnauthColumn ? 1 : 0);
     }
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
         RequestLogEntry entry = entries.get(rowIndex);
+        String matrixRole = getMatrixRole(columnIndex);
+        if (matrixRole != null) {
+            RoleResult result = entry.getRoleResult(matrixRole);
+            return result != null ? result.describe() : "";
+        }
         if (columnIndex < columnNames.length) {
             return switch (columnIndex) {
                 case 0 -> entry.getId();
                 case 1 -> entry.getAppliedRole();
                 case 2 -> entry.getMethod();
                 case 3 -> entry.getUrl();
-                case 4 -> entry.getOriginalStatusCode() != null ? entry.getOriginalStatusCode() : entry.getStatusCode();
+                case 4 -> entry.originalStatus() != RequestLogEntry.NO_STATUS ? entry.originalStatus() : entry.getStatusCode();
                 case 5 -> entry.getModifiedStatusCode();
                 case 6 -> entry.getCookieSummary();
                 case 7 -> entry.getParameterSummary();
@@ -118,6 +274,9 @@ public class RequestLogModel extends AbstractTableModel {
 
     @Override
     public Class<?> getColumnClass(int columnIndex) {
+        if (getMatrixRole(columnIndex) != null) {
+            return String.class;
+        }
         if (columnIndex < columnNames.length) {
             return switch (columnIndex) {
                 case 0, 4, 5 -> Integer.class;
@@ -154,10 +313,54 @@ public class RequestLogModel extends AbstractTableModel {
         return showUnauthColumn;
     }
 
+    /**
+     * Sets the roles that get a status/length column, in display order. An
+     * empty list hides the role matrix.
+     */
+    public void setMatrixRoles(List<String> roles) {
+        List<String> normalized = roles == null ? List.of() : List.copyOf(roles);
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            if (matrixRoles.equals(normalized)) {
+                return;
+            }
+            this.matrixRoles = normalized;
+            fireTableStructureChanged();
+        });
+    }
+
+    /**
+     * Receives the ids of entries dropped to stay within the maximum, on the
+     * EDT.
+     */
+    public void setEvictionListener(Consumer<List<Integer>> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Drops the oldest entries once the limit is exceeded, down to one block
+     * below it, so the next evictions are batched too.
+     */
     private void enforceLimit() {
-        while (entries.size() > maxEntries) {
-            entries.remove(0);
-            fireTableRowsDeleted(0, 0);
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        int block = Math.max(1, (int) (maxEntries * EVICTION_BLOCK_RATIO));
+        long firstSequence = entries.firstSequence();
+        List<RequestLogEntry> removed = entries.removeFirst(excess + block - 1);
+        columns.removeFirst(removed.size());
+        for (int i = 0; i < removed.size(); i++) {
+            removed.get(i).releaseStorage(null);
+            // A newer entry reusing the id keeps its mapping
+            sequenceById.remove(removed.get(i).getId(), firstSequence + i);
+        }
+        fireTableRowsDeleted(0, removed.size() - 1);
+        if (evictionListener != null) {
+            List<Integer> evicted = new ArrayList<>(removed.size());
+            for (RequestLogEntry entry : removed) {
+                evicted.add(entry.getId());
+            }
+            evictionListener.accept(evicted);
         }
     }
 }
@@ -0,0 +1,122 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable circular array addressed by logical index, where index 0 is the
+ * oldest element.
+ * <p>
+ * Every element also gets a sequence number when added, counting all
+ * elements ever added. Its logical index is its sequence minus
+ * {@link #firstSequence()}, so callers can keep a stable handle to an element
+ * while older ones are dropped.
+ * <p>
+ * Appending and dropping from the front are O(1) per element and never shift
+ * the remaining elements, unlike {@code ArrayList.remove(0)}. Not thread
+ * safe; {@link RequestLogModel} only touches it on the EDT.
+ */
+final class RingBuffer<T> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    /** Sequence number of the element at logical index 0. */
+    private long firstSequence;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        return (T) elements[physical(index)];
+    }
+
+    void set(int index, T element) {
+        elements[physical(index)] = element;
+    }
+
+    /**
+     * Appends an element and returns its sequence number.
+     */
+    long add(T element) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) % elements.length] = element;
+        size++;
+        return firstSequence + size - 1;
+    }
+
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Logical index of the element with the given sequence number, or -1 when
+     * it has been dropped.
+     */
+    int indexOf(long sequence) {
+        long index = sequence - firstSequence;
+        return index >= 0 && index < size ? (int) index : -1;
+    }
+
+    /**
+     * Drops the {@code count} oldest elements and returns them, oldest first.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> removeFirst(int count) {
+        int n = Math.min(count, size);
+        List<T> removed = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            removed.add((T) elements[head]);
+            elements[head] = null;
+            head = (head + 1) % elements.length;
+        }
+        size -= n;
+        firstSequence += n;
+        if (size == 0) {
+            head = 0;
+        }
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(elements, null);
+        firstSequence += size;
+        head = 0;
+        size = 0;
+    }
+
+    List<T> toList() {
+        List<T> copy = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            copy.add(get(i));
+        }
+        return copy;
+    }
+
+    private int physical(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return (head + index) % elements.length;
+    }
+
+    /** Doubles the array and unwraps it so the oldest element is at slot 0. */
+    private void grow() {
+        Object[] larger = new Object[elements.length * 2];
+        int firstPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, larger, 0, firstPart);
+        System.arraycopy(elements, 0, larger, firstPart, size - firstPart);
+        elements = larger;
+        head = 0;
+    }
+}
@@ -0,0 +1,158 @@
+package model;
+
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import util.MessageStorage;
+
+import java.io.UncheckedIOException;
+
+/**
+ * One cell of the role matrix: a request replayed as a single role, or without
+ * authentication, and the response it got.
+ * <p>
+ * Like {@link RequestLogEntry}, a cell of a cold row keeps its messages in a
+ * {@link MessageStorage} and rebuilds them when asked.
+ */
+public final class RoleResult {
+    /** Role name used for the replay without any credentials. */
+    public static final String UNAUTHENTICATED = "No auth";
+
+    private static final int REQUEST = 0;
+    private static final int RESPONSE = 1;
+    private static final int SLOTS = 2;
+
+    private final String role;
+    private final HttpRequest request;
+    private final HttpResponse response;
+    private final SendOutcome outcome;
+    /** Status of the response, or {@link RequestLogEntry#NO_STATUS}. */
+    private final int status;
+    /** Table cell text, built once so painting does not re-read the body. */
+    private final String summary;
+    /** Messages moved to storage, or null while both are on the heap. */
+    private final StoredMessages stored;
+
+    private RoleResult(String role, HttpRequest request, HttpResponse response, SendOutcome outcome) {
+        this.role = role;
+        this.request = request;
+        this.response = response;
+        this.outcome = outcome;
+        this.status = response != null ? response.statusCode() : RequestLogEntry.NO_STATUS;
+        this.summary = summarize(response, outcome);
+        this.stored = null;
+    }
+
+    private RoleResult(RoleResult base, HttpRequest request, HttpResponse response, StoredMessages stored) {
+        this.role = base.role;
+        this.request = request;
+        this.response = response;
+        this.outcome = base.outcome;
+        this.status = base.status;
+        this.summary = base.summary;
+        this.stored = stored;
+    }
+
+    public static RoleResult pending(String role, HttpRequest request) {
+        return new RoleResult(role, request, null, null);
+    }
+
+    /**
+     * Finished replay; {@code response} is null when the send did not succeed.
+     */
+    public static RoleResult completed(String role, HttpRequest request, HttpResponse response,
+            SendOutcome outcome) {
+        return new RoleResult(role, request, response, outcome);
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public HttpRequest getRequest() {
+        return request != null ? request : (stored != null ? stored.request(REQUEST) : null);
+    }
+
+    public HttpResponse getResponse() {
+        return response != null ? response : (stored != null ? stored.response(RESPONSE) : null);
+    }
+
+    public boolean isComplete() {
+        return outcome != null;
+    }
+
+    /**
+     * How the replay ended, or null while it is still queued or in flight.
+     */
+    public SendOutcome getOutcome() {
+        return outcome;
+    }
+
+    public Integer getStatusCode() {
+        return status != RequestLogEntry.NO_STATUS ? status : null;
+    }
+
+    /**
+     * Status and body length for the table cell, e.g. {@code 200 / 1532}.
+     */
+    public String describe() {
+        return summary;
+    }
+
+    /**
+     * Returns a copy of this cell whose messages live in {@code store}, or
+     * this cell when there is nothing to move or the store cannot take them.
+     */
+    RoleResult spillTo(MessageStorage store) {
+        if ((request == null && response == null) || (stored != null && stored.store() != store)) {
+            return this;
+        }
+        long[] handles = StoredMessages.emptyHandles(SLOTS);
+        if (stored != null) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                handles[slot] = stored.handle(slot);
+            }
+        }
+        HttpService service = stored != null ? stored.service() : null;
+        HttpRequest heapRequest = request;
+        HttpResponse heapResponse = response;
+        try {
+            if (heapRequest != null) {
+                service = heapRequest.httpService();
+                handles[REQUEST] = store.append(heapRequest.toByteArray().getBytes());
+                if (handles[REQUEST] != MessageStorage.NONE) {
+                    heapRequest = null;
+                }
+            }
+            if (heapResponse != null) {
+                handles[RESPONSE] = store.append(heapResponse.toByteArray().getBytes());
+                if (handles[RESPONSE] != MessageStorage.NONE) {
+                    heapResponse = null;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            new StoredMessages(store, service, handles).releaseUnless(stored);
+            return this;
+        }
+        return new RoleResult(this, heapRequest, heapResponse, new StoredMessages(store, service, handles));
+    }
+
+    /**
+     * Frees the stored messages that {@code successor} does not carry over.
+     */
+    void releaseStorage(RoleResult successor) {
+        if (stored != null) {
+            stored.releaseUnless(successor != null ? successor.stored : null);
+        }
+    }
+
+    private static String summarize(HttpResponse response, SendOutcome outcome) {
+        if (outcome == null) {
+            return "...";
+        }
+        if (response == null) {
+            return outcome.getStatus().getLabel();
+        }
+        return response.statusCode() + " / " + response.body().length();
+    }
+}
@@ -0,0 +1,61 @@
+package model;
+
+/**
+ * How an extension-originated (unauth, preview or role matrix) send ended.
+ */
+public final class SendOutcome {
+    public enum Status {
+        SUCCESS("ok"),
+        REUSED("reused"),
+        TIMEOUT("timed out"),
+        FAILED("failed"),
+        DROPPED("dropped"),
+        CANCELLED("cancelled");
+
+        private final String label;
+
+        Status(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final Status status;
+    private final int attempts;
+
+    public SendOutcome(Status status, int attempts) {
+        this.status = status;
+        this.attempts = attempts;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Number of times the request was sent; 0 when it never left the queue.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS || status == Status.REUSED;
+    }
+
+    public String describe() {
+        int retries = attempts - 1;
+        if (retries <= 0) {
+            return status.getLabel();
+        }
+        return status.getLabel() + " after " + retries + (retries == 1 ? " retry" : " retries");
+    }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import util.MessageStorage;
+
+import java.util.Arrays;
+
+/**
+ * Handles to the messages of one log entry, or of one role matrix cell, that
+ * were moved to a {@link MessageStorage}.
+ * <p>
+ * Messages are rebuilt from the store on every call, so nothing stays on the
+ * heap once the caller is done with it.
+ */
+final class StoredMessages {
+    static final int ORIGINAL_REQUEST = 0;
+    static final int MODIFIED_REQUEST = 1;
+    static final int UNAUTH_REQUEST = 2;
+    static final int ORIGINAL_RESPONSE = 3;
+    static final int MODIFIED_RESPONSE = 4;
+    static final int UNAUTH_RESPONSE = 5;
+    static final int SLOTS = 6;
+
+    private final MessageStorage store;
+    private final HttpService service;
+    private final long[] handles;
+
+    StoredMessages(MessageStorage store, HttpService service, long[] handles) {
+        this.store = store;
+        this.service = service;
+        this.handles = handles;
+    }
+
+    static long[] emptyHandles() {
+        return emptyHandles(SLOTS);
+    }
+
+    static long[] emptyHandles(int slots) {
+        long[] handles = new long[slots];
+        Arrays.fill(handles, MessageStorage.NONE);
+        return handles;
+    }
+
+    MessageStorage store() {
+        return store;
+    }
+
+    HttpService service() {
+        return service;
+    }
+
+    boolean has(int slot) {
+        return handles[slot] != MessageStorage.NONE;
+    }
+
+    long handle(int slot) {
+        return handles[slot];
+    }
+
+    HttpRequest request(int slot) {
+        byte[] bytes = has(slot) ? store.read(handles[slot]) : null;
+        return bytes != null ? HttpRequest.httpRequest(service, ByteArray.byteArray(bytes)) : null;
+    }
+
+    HttpResponse response(int slot) {
+        byte[] bytes = has(slot) ? store.read(handles[slot]) : null;
+        return bytes != null ? HttpResponse.httpResponse(ByteArray.byteArray(bytes)) : null;
+    }
+
+    /**
+     * The same requests without any responses, for an entry whose responses
+     * are being replaced.
+     */
+    StoredMessages requestsOnly() {
+        long[] kept = Arrays.copyOf(handles, SLOTS);
+        Arrays.fill(kept, ORIGINAL_RESPONSE, SLOTS, MessageStorage.NONE);
+        return new StoredMessages(store, service, kept);
+    }
+
+    /**
+     * Releases every handle that {@code successor} does not carry over.
+     */
+    void releaseUnless(StoredMessages successor) {
+        for (int slot = 0; slot < handles.length; slot++) {
+            if (has(slot) && (successor == null || successor.store != store || successor.handles[slot] != handles[slot])) {
+                store.release(handles[slot]);
+            }
+        }
+    }
+}
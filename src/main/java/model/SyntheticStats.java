@@ -0,0 +1,164 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Point-in-time counters of the synthetic (unauth and preview) request
+ * scheduler, for display in the UI.
+ */
+public final class SyntheticStats {
+    private final int queued;
+    private final int inFlight;
+    private final long submitted;
+    private final long completed;
+    private final long dropped;
+    private final long cacheHits;
+    private final List<HostStats> hosts;
+    private final int concurrencyLimit;
+    private final long latencyP50Millis;
+    private final long latencyP90Millis;
+    private final int awaitingResponse;
+    private final long expiredResponses;
+    private final long expiredLastMinute;
+
+    public SyntheticStats(int queued, int inFlight, long submitted, long completed, long dropped,
+            List<HostStats> hosts) {
+        this(queued, inFlight, submitted, completed, dropped, 0, hosts);
+    }
+
+    public SyntheticStats(int queued, int inFlight, long submitted, long completed, long dropped,
+            long cacheHits, List<HostStats> hosts) {
+        this(queued, inFlight, submitted, completed, dropped, cacheHits, hosts, 0, -1, -1);
+    }
+
+    public SyntheticStats(int queued, int inFlight, long submitted, long completed, long dropped,
+            long cacheHits, List<HostStats> hosts, int concurrencyLimit, long latencyP50Millis,
+            long latencyP90Millis) {
+        this(queued, inFlight, submitted, completed, dropped, cacheHits, hosts, concurrencyLimit, latencyP50Millis,
+                latencyP90Millis, 0, 0, 0);
+    }
+
+    private SyntheticStats(int queued, int inFlight, long submitted, long completed, long dropped,
+            long cacheHits, List<HostStats> hosts, int concurrencyLimit, long latencyP50Millis,
+            long latencyP90Millis, int awaitingResponse, long expiredResponses, long expiredLastMinute) {
+        this.queued = queued;
+        this.inFlight = inFlight;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.dropped = dropped;
+        this.cacheHits = cacheHits;
+        this.hosts = hosts == null ? List.of() : List.copyOf(hosts);
+        this.concurrencyLimit = concurrencyLimit;
+        this.latencyP50Millis = latencyP50Millis;
+        this.latencyP90Millis = latencyP90Millis;
+        this.awaitingResponse = awaitingResponse;
+        this.expiredResponses = expiredResponses;
+        this.expiredLastMinute = expiredLastMinute;
+    }
+
+    public SyntheticStats withCacheHits(long cacheHits) {
+        return new SyntheticStats(queued, inFlight, submitted, completed, dropped, cacheHits, hosts,
+                concurrencyLimit, latencyP50Millis, latencyP90Millis, awaitingResponse, expiredResponses,
+                expiredLastMinute);
+    }
+
+    public SyntheticStats withPendingResponses(int awaitingResponse, long expiredResponses, long expiredLastMinute) {
+        return new SyntheticStats(queued, inFlight, submitted, completed, dropped, cacheHits, hosts,
+                concurrencyLimit, latencyP50Millis, latencyP90Millis, awaitingResponse, expiredResponses,
+                expiredLastMinute);
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Duplicate unauth requests answered from the response cache instead of
+     * being sent.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Hosts with queued or running requests, busiest first.
+     */
+    public List<HostStats> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Global concurrency limit in effect, adaptive or configured.
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Median send latency over the last measurement window, or -1 before
+     * enough sends have completed.
+     */
+    public long getLatencyP50Millis() {
+        return latencyP50Millis;
+    }
+
+    public long getLatencyP90Millis() {
+        return latencyP90Millis;
+    }
+
+    /**
+     * Tracked requests whose response has not arrived yet.
+     */
+    public int getAwaitingResponse() {
+        return awaitingResponse;
+    }
+
+    /**
+     * Tracked requests logged without a response because none arrived within
+     * the response TTL.
+     */
+    public long getExpiredResponses() {
+        return expiredResponses;
+    }
+
+    public long getExpiredLastMinute() {
+        return expiredLastMinute;
+    }
+
+    public String describePending() {
+        return "Awaiting response: " + awaitingResponse + " | Expired: " + expiredResponses + " ("
+                + expiredLastMinute + " in the last minute)";
+    }
+
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        text.append("Queued: ").append(queued)
+                .append(" | In flight: ").append(inFlight);
+        if (concurrencyLimit > 0) {
+            text.append('/').append(concurrencyLimit);
+        }
+        text.append(" | Sent: ").append(completed)
+                .append(" | Dropped: ").append(dropped)
+                .append(" | Reused: ").append(cacheHits);
+        if (latencyP90Millis >= 0) {
+            text.append(" | p50/p90: ").append(latencyP50Millis).append('/').append(latencyP90Millis).append(" ms");
+        }
+        return text.toString();
+    }
+}
@@ -1,10 +1,13 @@
 package ui;
 
+import model.LogFilter;
 import model.RequestLogModel;
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class FilterPanel extends JPanel {
     private final RequestTablePanel requestTablePanel;
@@ -57,37 +60,43 @@ public class FilterPanel extends JPanel {
     }
 
     private void applyFilters() {
-        List<RowFilter<RequestLogModel, Integer>> filters = new ArrayList<>();
+        List<LogFilter> filters = new ArrayList<>();
 
         // Method filter
         String method = (String) methodFilter.getSelectedItem();
         if (method != null && !method.equals("All")) {
-            filters.add(RowFilter.regexFilter(method, 1));
+            filters.add(LogFilter.methodIs(method));
         }
 
         // Status filter
         String status = (String) statusFilter.getSelectedItem();
         if (status != null && !status.equals("All")) {
-            String statusPattern = status.replace("xx", "\\d\\d");
-            filters.add(RowFilter.regexFilter(statusPattern, 3));
+            filters.add(LogFilter.statusClass(status.charAt(0) - '0'));
         }
 
         // URL filter
         String url = urlFilter.getText().trim();
         if (!url.isEmpty()) {
-            filters.add(RowFilter.regexFilter("(?i)" + url, 2));
+            try {
+                filters.add(LogFilter.urlMatches(Pattern.compile("(?i)" + url)));
+            } catch (PatternSyntaxException e) {
+                filters.add(LogFilter.urlMatches(Pattern.compile(Pattern.quote(url), Pattern.CASE_INSENSITIVE)));
+            }
         }
 
         // ID filter
         String id = idFilter.getText().trim();
         if (!id.isEmpty()) {
-            filters.add(RowFilter.regexFilter("^" + id + "$", 0));
+            try {
+                filters.add(LogFilter.idIs(Integer.parseInt(id)));
+            } catch (NumberFormatException e) {
+                filters.add((columns, row) -> false);
+            }
         }
 
         // Apply combined filter
         if (!filters.isEmpty()) {
-            RowFilter<RequestLogModel, Integer> combinedFilter = RowFilter.andFilter(filters);
-            requestTablePanel.applyFilter(combinedFilter);
+            requestTablePanel.applyFilter(LogFilter.all(filters));
         } else {
             requestTablePanel.clearFilter();
         }
@@ -0,0 +1,350 @@
+package ui;
+
+import model.LogColumns;
+import model.LogFilter;
+import model.RequestLogModel;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Row sorter for the request log that works on {@link LogColumns} rather than
+ * cell values.
+ * <p>
+ * A sort packs each row's integer key and model index into one {@code long}
+ * and sorts that array, so no value is boxed and no comparator runs; ties keep
+ * log order. Columns without an integer key, the URL and role matrix columns,
+ * are ranked by their text first and then sorted the same way. New rows are
+ * placed by binary search and evictions only shift indices, so a busy log
+ * never triggers a full sort. As with {@code TableRowSorter}'s defaults, one
+ * column is sorted at a time and updated rows keep their place until the next
+ * sort, but the filter is applied to them again right away: a row usually
+ * gets its status only after it was inserted.
+ */
+final class LogRowSorter extends RowSorter<RequestLogModel> {
+    private static final long ROW_MASK = 0x7FFFFFFFL;
+    private static final long KEY_MASK = 0xFFFFFFFFL;
+
+    private final RequestLogModel model;
+    private List<SortKey> sortKeys = List.of();
+    private LogFilter filter;
+    /** Model row of each view row, or null while every row shows in log order. */
+    private int[] viewToModel;
+    private int viewRowCount;
+    /** Inverse of viewToModel, built on demand. */
+    private int[] modelToView;
+    private int modelRowCount;
+
+    LogRowSorter(RequestLogModel model) {
+        this.model = model;
+        this.modelRowCount = model.getRowCount();
+    }
+
+    @Override
+    public RequestLogModel getModel() {
+        return model;
+    }
+
+    /**
+     * Shows only the rows {@code filter} accepts, or all rows when null.
+     */
+    void setFilter(LogFilter filter) {
+        this.filter = filter;
+        rebuild();
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        checkColumn(column);
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        }
+        setSortKeys(List.of(new SortKey(column, order)));
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            checkIndex(index, modelRowCount);
+            return index;
+        }
+        checkIndex(index, viewRowCount);
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        checkIndex(index, modelRowCount);
+        if (viewToModel == null) {
+            return index;
+        }
+        if (modelToView == null) {
+            modelToView = new int[modelRowCount];
+            Arrays.fill(modelToView, -1);
+            for (int i = 0; i < viewRowCount; i++) {
+                modelToView[viewToModel[i]] = i;
+            }
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> normalized = keys == null || keys.isEmpty() || keys.get(0).getSortOrder() == SortOrder.UNSORTED
+                ? List.of()
+                : List.of(keys.get(0));
+        if (!normalized.isEmpty()) {
+            checkColumn(normalized.get(0).getColumn());
+        }
+        if (normalized.equals(sortKeys)) {
+            return;
+        }
+        sortKeys = normalized;
+        fireSortOrderChanged();
+        rebuild();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewToModel == null ? modelRowCount : viewRowCount;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() >= model.getColumnCount()) {
+            sortKeys = List.of();
+            fireSortOrderChanged();
+        }
+        rebuild();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        rebuild();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        if (firstRow < 0 || firstRow > endRow || firstRow > modelRowCount) {
+            throw new IndexOutOfBoundsException("Invalid range " + firstRow + "-" + endRow);
+        }
+        if (firstRow != modelRowCount) {
+            // The log only appends; anything else is rare enough to start over
+            rebuild();
+            return;
+        }
+        modelRowCount += endRow - firstRow + 1;
+        if (viewToModel == null) {
+            return;
+        }
+        LogColumns columns = model.getColumns();
+        for (int row = firstRow; row <= endRow; row++) {
+            if (filter == null || filter.include(columns, row)) {
+                insert(row);
+            }
+        }
+        modelToView = null;
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        checkRange(firstRow, endRow);
+        int count = endRow - firstRow + 1;
+        modelRowCount -= count;
+        if (viewToModel == null) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < viewRowCount; i++) {
+            int row = viewToModel[i];
+            if (row < firstRow) {
+                viewToModel[kept++] = row;
+            } else if (row > endRow) {
+                viewToModel[kept++] = row - count;
+            }
+        }
+        viewRowCount = kept;
+        modelToView = null;
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        checkRange(firstRow, endRow);
+        if (filter == null) {
+            return;
+        }
+        LogColumns columns = model.getColumns();
+        int[] previous = null;
+        for (int row = firstRow; row <= endRow; row++) {
+            int viewIndex = convertRowIndexToView(row);
+            boolean include = filter.include(columns, row);
+            if (include == (viewIndex >= 0)) {
+                continue;
+            }
+            if (previous == null) {
+                previous = Arrays.copyOf(viewToModel, viewRowCount);
+            }
+            if (include) {
+                insert(row);
+            } else {
+                System.arraycopy(viewToModel, viewIndex + 1, viewToModel, viewIndex, viewRowCount - viewIndex - 1);
+                viewRowCount--;
+            }
+            modelToView = null;
+        }
+        if (previous != null) {
+            fireRowSorterChanged(previous);
+        }
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        checkColumn(column);
+        rowsUpdated(firstRow, endRow);
+    }
+
+    /**
+     * Filters and sorts every row again and tells the table the view changed.
+     */
+    private void rebuild() {
+        int[] previous = new int[getViewRowCount()];
+        for (int i = 0; i < previous.length; i++) {
+            previous[i] = viewToModel != null ? viewToModel[i] : i;
+        }
+
+        modelRowCount = model.getRowCount();
+        modelToView = null;
+        if (filter == null && sortKeys.isEmpty()) {
+            viewToModel = null;
+            viewRowCount = 0;
+        } else {
+            LogColumns columns = model.getColumns();
+            int[] rows = new int[modelRowCount];
+            int count = 0;
+            for (int row = 0; row < modelRowCount; row++) {
+                if (filter == null || filter.include(columns, row)) {
+                    rows[count++] = row;
+                }
+            }
+            if (!sortKeys.isEmpty()) {
+                sort(rows, count);
+            }
+            viewToModel = rows;
+            viewRowCount = count;
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    private void sort(int[] rows, int count) {
+        int column = sortKeys.get(0).getColumn();
+        boolean descending = sortKeys.get(0).getSortOrder() == SortOrder.DESCENDING;
+        int[] keys = model.hasSortKey(column) ? null : textRanks(rows, count, column);
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            int key = keys != null ? keys[i] : model.sortKey(rows[i], column);
+            // Flip the sign bit so signed keys order correctly as unsigned
+            long ordered = (key ^ Integer.MIN_VALUE) & KEY_MASK;
+            if (descending) {
+                ordered = KEY_MASK - ordered;
+            }
+            packed[i] = (ordered << 31) | rows[i];
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < count; i++) {
+            rows[i] = (int) (packed[i] & ROW_MASK);
+        }
+    }
+
+    /** Position of each row's cell text among the distinct texts of the column. */
+    private int[] textRanks(int[] rows, int count, int column) {
+        String[] texts = new String[count];
+        for (int i = 0; i < count; i++) {
+            texts[i] = text(rows[i], column);
+        }
+        String[] distinct = texts.clone();
+        Arrays.sort(distinct);
+        int unique = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (unique == 0 || !distinct[i].equals(distinct[unique - 1])) {
+                distinct[unique++] = distinct[i];
+            }
+        }
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranks[i] = Arrays.binarySearch(distinct, 0, unique, texts[i]);
+        }
+        return ranks;
+    }
+
+    /** Places a model row at its sorted position, or in log order when unsorted. */
+    private void insert(int row) {
+        if (viewRowCount == viewToModel.length) {
+            viewToModel = Arrays.copyOf(viewToModel, Math.max(16, viewRowCount * 2));
+        }
+        int low = 0;
+        int high = viewRowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(viewToModel[mid], row) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        System.arraycopy(viewToModel, low, viewToModel, low + 1, viewRowCount - low);
+        viewToModel[low] = row;
+        viewRowCount++;
+    }
+
+    /** Same order as {@link #sort}: by key, then by model row. */
+    private int compare(int rowA, int rowB) {
+        if (sortKeys.isEmpty()) {
+            return Integer.compare(rowA, rowB);
+        }
+        int column = sortKeys.get(0).getColumn();
+        int result = model.hasSortKey(column)
+                ? Integer.compare(model.sortKey(rowA, column), model.sortKey(rowB, column))
+                : text(rowA, column).compareTo(text(rowB, column));
+        if (sortKeys.get(0).getSortOrder() == SortOrder.DESCENDING) {
+            result = -result;
+        }
+        return result != 0 ? result : Integer.compare(rowA, rowB);
+    }
+
+    private String text(int row, int column) {
+        return String.valueOf(model.getValueAt(row, column));
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= model.getColumnCount()) {
+            throw new IndexOutOfBoundsException("Column " + column + " out of bounds for length "
+                    + model.getColumnCount());
+        }
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+    }
+
+    private void checkRange(int firstRow, int endRow) {
+        if (firstRow < 0 || firstRow > endRow || endRow >= modelRowCount) {
+            throw new IndexOutOfBoundsException("Invalid range " + firstRow + "-" + endRow);
+        }
+    }
+}
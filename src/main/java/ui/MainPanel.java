@@ -7,6 +7,9 @@ import model.ExtensionState;
 import model.HighlightRule;
 import model.RequestLogModel;
 import model.UserRole;
+import util.CompressedMessageStore;
+import util.ExtensionLogger;
+import util.MessageStore;
 import util.PersistenceService;
 
 import javax.swing.JFileChooser;
@@ -15,6 +18,7 @@ import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import java.awt.BorderLayout;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,6 +27,7 @@ public class MainPanel extends JPanel {
     private final RequestLogModel requestLogModel;
     private final ExtensionConfig config;
     private final RequestHandler requestHandler;
+    private final ExtensionLogger logger;
     private final PersistenceService persistenceService;
     private RequestTablePanel requestTablePanel;
     private FilterPanel filterPanel;
@@ -31,10 +36,14 @@ public class MainPanel extends JPanel {
     // embedded
     private SettingsPanel settingsPanel;
     private QuickControlsPanel quickControlsPanel;
+    /** Opened the first time disk-backed logging is switched on. */
+    private MessageStore messageStore;
+    private CompressedMessageStore compressedStore;
 
     public MainPanel(MontoyaApi api, RequestLogModel requestLogModel, ExtensionConfig config,
-            RequestHandler requestHandler) {
+            RequestHandler requestHandler, ExtensionLogger logger) {
         this.api = api;
+        this.logger = logger;
         this.requestLogModel = requestLogModel;
         this.config = config;
         this.requestHandler = requestHandler;
@@ -42,12 +51,15 @@ public class MainPanel extends JPanel {
 
         ExtensionState initialState = persistenceService.loadState(config);
         this.requestLogModel.setMaxEntries(config.getMaxLogEntries());
+        this.requestLogModel.setEvictionListener(requestHandler::onEntriesEvicted);
+        applyLogStorage();
         initializeUI(initialState);
         requestLogModel.setShowUnauthColumn(config.isUnauthenticatedTesting());
         requestTablePanel.refreshColumnLayout();
         requestTablePanel.refreshColumnLayout();
         requestHandler.setReplaceRules(initialState.getReplaceRules());
         requestHandler.setUserRoles(initialState.getUserRoles());
+        refreshMatrixColumns();
         requestTablePanel.setHighlightRules(initialState.getHighlightRules());
         quickControlsPanel.refreshFromConfig();
         settingsPanel.refreshFromConfig();
@@ -61,7 +73,7 @@ public class MainPanel extends JPanel {
         JTabbedPane tabbedPane = new JTabbedPane();
 
         // Request Log Tab
-        requestTablePanel = new RequestTablePanel(api, requestLogModel);
+        requestTablePanel = new RequestTablePanel(api, requestLogModel, logger);
         JPanel requestLogTab = new JPanel(new BorderLayout());
         // Quick controls + Filter panel on top
         JPanel controls = new JPanel(new BorderLayout());
@@ -90,7 +102,8 @@ public class MainPanel extends JPanel {
         // Highlight Rules Tab - REMOVED (Embedded in Rules and Roles)
 
         // Settings Tab
-        settingsPanel = new SettingsPanel(api, config, this::handleConfigChanged);
+        settingsPanel = new SettingsPanel(api, config, this::handleConfigChanged,
+                requestHandler::getSyntheticStats, this::describeLogStorage);
         tabbedPane.addTab("Settings", settingsPanel);
 
         add(tabbedPane, BorderLayout.CENTER);
@@ -114,12 +127,71 @@ public class MainPanel extends JPanel {
 
     private void handleUserRolesChanged(List<UserRole> roles) {
         requestHandler.setUserRoles(roles);
+        refreshMatrixColumns();
         persistState();
     }
 
+    private void refreshMatrixColumns() {
+        requestLogModel.setMatrixRoles(config.isRoleMatrix() ? requestHandler.getMatrixRoleNames() : List.of());
+    }
+
+    private void applyLogStorage() {
+        if (config.isDiskBackedLog() && messageStore == null) {
+            try {
+                messageStore = MessageStore.openTemporary();
+            } catch (IOException e) {
+                logger.error("Failed to create log storage, keeping messages in memory: " + e.getMessage());
+                config.setDiskBackedLog(false);
+                if (settingsPanel != null) {
+                    settingsPanel.refreshFromConfig();
+                }
+            }
+        }
+        if (config.isDiskBackedLog()) {
+            requestLogModel.setMessageStore(messageStore);
+        } else if (config.isCompressLogMessages()) {
+            if (compressedStore == null) {
+                compressedStore = new CompressedMessageStore();
+            }
+            requestLogModel.setMessageStore(compressedStore);
+        } else {
+            requestLogModel.setMessageStore(null);
+        }
+    }
+
+    /**
+     * One line about where older log messages currently live, for the
+     * settings tab, or null while they all stay in memory as they are.
+     */
+    private String describeLogStorage() {
+        if (config.isDiskBackedLog() && messageStore != null) {
+            return String.format("On disk: %d segment file(s) | Written: %.1f MB",
+                    messageStore.segmentCount(), messageStore.bytesWritten() / (1024.0 * 1024.0));
+        }
+        if (!config.isDiskBackedLog() && config.isCompressLogMessages() && compressedStore != null) {
+            long raw = compressedStore.rawBytes();
+            long stored = compressedStore.storedBytes();
+            return String.format("Compressed: %.1f MB -> %.1f MB (%.0f%%)",
+                    raw / (1024.0 * 1024.0), stored / (1024.0 * 1024.0), raw > 0 ? stored * 100.0 / raw : 100.0);
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the temporary files of disk-backed logging.
+     */
+    public void shutdown() {
+        if (messageStore != null) {
+            messageStore.close();
+        }
+    }
+
     private void handleConfigChanged() {
+        requestHandler.onConfigChanged();
         requestLogModel.setMaxEntries(config.getMaxLogEntries());
+        applyLogStorage();
         requestLogModel.setShowUnauthColumn(config.isUnauthenticatedTesting());
+        refreshMatrixColumns();
         persistState();
         if (quickControlsPanel != null) {
             quickControlsPanel.refreshFromConfig();
@@ -179,6 +251,7 @@ public class MainPanel extends JPanel {
         replaceRulesPanel.setHighlightRules(state.getHighlightRules());
         requestLogModel.setMaxEntries(config.getMaxLogEntries());
         requestLogModel.setShowUnauthColumn(config.isUnauthenticatedTesting());
+        refreshMatrixColumns();
         quickControlsPanel.refreshFromConfig();
         settingsPanel.refreshFromConfig();
         requestTablePanel.refreshColumnLayout();
@@ -13,6 +13,9 @@ public class ReplaceRuleDialog extends JDialog {
     private final java.util.List<String> availableRoles;
     private JTextField nameField;
     private JComboBox<String> roleCombo; // Added
+    private JTextField hostField;
+    private JTextField pathField;
+    private JComboBox<String> methodCombo;
     private ReplaceOperationTableModel operationTableModel;
     private JTable operationTable;
     private JButton editOperationButton;
@@ -56,9 +59,35 @@ public class ReplaceRuleDialog extends JDialog {
         }
         panel.add(roleCombo, gbc);
 
+        // Scope: empty fields match every request
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        panel.add(new JLabel("Host (glob):"), gbc);
+        gbc.gridx = 1;
+        hostField = new JTextField(20);
+        hostField.setToolTipText("e.g. *.example.com - leave empty for any host");
+        panel.add(hostField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        panel.add(new JLabel("Path Prefix:"), gbc);
+        gbc.gridx = 1;
+        pathField = new JTextField(20);
+        pathField.setToolTipText("e.g. /api/v2/ - leave empty for any path");
+        panel.add(pathField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        panel.add(new JLabel("Method:"), gbc);
+        gbc.gridx = 1;
+        methodCombo = new JComboBox<>(new String[] { "Any", "GET", "POST", "PUT", "PATCH", "DELETE", "HEAD",
+                "OPTIONS" });
+        methodCombo.setEditable(true);
+        panel.add(methodCombo, gbc);
+
         // Operations panel
         gbc.gridx = 0;
-        gbc.gridy = 2; // Shifted down
+        gbc.gridy = 5; // Shifted down
         gbc.gridwidth = 2;
         gbc.fill = GridBagConstraints.BOTH;
         gbc.weightx = 1.0;
@@ -66,7 +95,7 @@ public class ReplaceRuleDialog extends JDialog {
         JPanel operationsPanel = createOperationsPanel();
         panel.add(operationsPanel, gbc);
 
-        gbc.gridy = 3; // Shifted down
+        gbc.gridy = 6; // Shifted down
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.weightx = 0;
         gbc.weighty = 0;
@@ -124,6 +153,11 @@ public class ReplaceRuleDialog extends JDialog {
             roleCombo.setSelectedItem(currentRole);
         }
 
+        hostField.setText(rule.getHostPattern());
+        pathField.setText(rule.getPathPrefix());
+        String method = rule.getMethod();
+        methodCombo.setSelectedItem(method == null || method.isEmpty() ? "Any" : method);
+
         operationTable.clearSelection();
         updateOperationButtons();
     }
@@ -158,6 +192,11 @@ public class ReplaceRuleDialog extends JDialog {
             rule.setTargetRole(selectedRole);
         }
 
+        rule.setHostPattern(hostField.getText());
+        rule.setPathPrefix(pathField.getText());
+        Object method = methodCombo.getSelectedItem();
+        rule.setMethod(method == null || "Any".equalsIgnoreCase(method.toString()) ? "" : method.toString());
+
         rule.setOperations(operationTableModel.getOperations());
         return true;
     }
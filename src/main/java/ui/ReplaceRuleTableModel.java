@@ -7,7 +7,7 @@ import java.util.List;
 
 class ReplaceRuleTableModel extends AbstractTableModel {
     private final List<ReplaceRule> rules;
-    private static final String[] COLUMNS = {"Enabled", "Name", "Operations"};
+    private static final String[] COLUMNS = {"Enabled", "Name", "Scope", "Operations"};
 
     ReplaceRuleTableModel(List<ReplaceRule> rules) {
         this.rules = rules;
@@ -34,7 +34,8 @@ class ReplaceRuleTableModel extends AbstractTableModel {
         return switch (columnIndex) {
             case 0 -> rule.isEnabled();
             case 1 -> rule.getName();
-            case 2 -> rule.describeOperations();
+            case 2 -> rule.describeScope();
+            case 3 -> rule.describeOperations();
             default -> null;
         };
     }
@@ -5,14 +5,16 @@ import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.ui.editor.HttpRequestEditor;
 import burp.api.montoya.ui.editor.HttpResponseEditor;
+import model.LogFilter;
 import model.RequestLogEntry;
 import model.RequestLogModel;
+import model.RoleResult;
+import util.ExtensionLogger;
 
 import javax.swing.*;
 import javax.swing.event.TableModelEvent;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableRowSorter;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
@@ -22,9 +24,13 @@ import static javax.swing.SwingUtilities.invokeLater;
 
 public class RequestTablePanel extends JPanel {
     private final MontoyaApi api;
+    private final ExtensionLogger log;
     private final RequestLogModel requestLogModel;
     private final JTable requestTable;
-    private final TableRowSorter<RequestLogModel> sorter;
+    private final LogRowSorter sorter;
+    /** Filter from the filter bar, combined with the role field's. */
+    private LogFilter panelFilter;
+    private LogFilter roleFilter;
     private java.util.List<model.HighlightRule> highlightRules;
     private HttpRequestEditor originalRequestEditor;
     private HttpRequestEditor modifiedRequestEditor;
@@ -32,6 +38,8 @@ public class RequestTablePanel extends JPanel {
     private HttpResponseEditor originalResponseEditor;
     private HttpResponseEditor modifiedResponseEditor;
     private HttpResponseEditor unauthResponseEditor;
+    private HttpRequestEditor roleRequestEditor;
+    private HttpResponseEditor roleResponseEditor;
     private JTabbedPane requestTabbedPane;
     private JTabbedPane responseTabbedPane;
     private JTextPane requestDiffPane;
@@ -40,10 +48,13 @@ public class RequestTablePanel extends JPanel {
     private int requestDiffTabIndex;
     private int responseUnauthTabIndex;
     private int responseDiffTabIndex;
+    private int requestRoleTabIndex;
+    private int responseRoleTabIndex;
     private JTextField userRoleFilterField;
 
-    public RequestTablePanel(MontoyaApi api, RequestLogModel requestLogModel) {
+    public RequestTablePanel(MontoyaApi api, RequestLogModel requestLogModel, ExtensionLogger log) {
         this.api = api;
+        this.log = log;
         this.requestLogModel = requestLogModel;
         this.highlightRules = new java.util.ArrayList<>();
 
@@ -97,37 +108,7 @@ public class RequestTablePanel extends JPanel {
                 return c;
             }
         };
-        sorter = new TableRowSorter<>(requestLogModel);
-
-        // Set up comparators for each column to prevent null comparator exceptions
-        sorter.setComparator(0, java.util.Comparator.comparingInt(o -> (Integer) o)); // ID
-        sorter.setComparator(1, java.util.Comparator.comparing(String::valueOf)); // User Role
-        sorter.setComparator(2, java.util.Comparator.comparing(String::valueOf)); // Method
-        sorter.setComparator(3, java.util.Comparator.comparing(String::valueOf)); // URL
-        sorter.setComparator(4, (o1, o2) -> { // Original Status
-            Integer i1 = (Integer) o1;
-            Integer i2 = (Integer) o2;
-            if (i1 == null && i2 == null)
-                return 0;
-            if (i1 == null)
-                return 1;
-            if (i2 == null)
-                return -1;
-            return i1.compareTo(i2);
-        });
-        sorter.setComparator(5, (o1, o2) -> { // Modified Status
-            Integer i1 = (Integer) o1;
-            Integer i2 = (Integer) o2;
-            if (i1 == null && i2 == null)
-                return 0;
-            if (i1 == null)
-                return 1;
-            if (i2 == null)
-                return -1;
-            return i1.compareTo(i2);
-        });
-        sorter.setComparator(6, java.util.Comparator.comparing(String::valueOf)); // Cookies
-        sorter.setComparator(7, java.util.Comparator.comparing(String::valueOf)); // Parameters
+        sorter = new LogRowSorter(requestLogModel);
 
         requestTable.setRowSorter(sorter);
         requestTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -156,6 +137,12 @@ public class RequestTablePanel extends JPanel {
                 displaySelectedRequest();
             }
         });
+        // Clicking a role matrix cell shows that role's replay
+        requestTable.getColumnModel().getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                displaySelectedRoleResult();
+            }
+        });
 
         refreshColumnLayout();
     }
@@ -165,11 +152,13 @@ public class RequestTablePanel extends JPanel {
         originalRequestEditor = api.userInterface().createHttpRequestEditor();
         modifiedRequestEditor = api.userInterface().createHttpRequestEditor();
         unauthRequestEditor = api.userInterface().createHttpRequestEditor();
+        roleRequestEditor = api.userInterface().createHttpRequestEditor();
 
         // Create response editors
         originalResponseEditor = api.userInterface().createHttpResponseEditor();
         modifiedResponseEditor = api.userInterface().createHttpResponseEditor();
         unauthResponseEditor = api.userInterface().createHttpResponseEditor();
+        roleResponseEditor = api.userInterface().createHttpResponseEditor();
 
         // Request tabbed pane
         requestTabbedPane = new JTabbedPane();
@@ -188,6 +177,12 @@ public class RequestTablePanel extends JPanel {
         requestTabbedPane.addTab("Unauth Request", unauthReqPanel);
         requestTabbedPane.setEnabledAt(requestUnauthTabIndex, false);
 
+        JPanel roleReqPanel = new JPanel(new BorderLayout());
+        roleReqPanel.add(roleRequestEditor.uiComponent(), BorderLayout.CENTER);
+        requestRoleTabIndex = requestTabbedPane.getTabCount();
+        requestTabbedPane.addTab("Role Request", roleReqPanel);
+        requestTabbedPane.setEnabledAt(requestRoleTabIndex, false);
+
         requestDiffPane = createDiffPane();
         JScrollPane requestDiffScroll = new JScrollPane(requestDiffPane);
         requestDiffTabIndex = requestTabbedPane.getTabCount();
@@ -219,6 +214,12 @@ public class RequestTablePanel extends JPanel {
         responseTabbedPane.addTab("Unauth Response", unauthRespPanel);
         responseTabbedPane.setEnabledAt(responseUnauthTabIndex, false);
 
+        JPanel roleRespPanel = new JPanel(new BorderLayout());
+        roleRespPanel.add(roleResponseEditor.uiComponent(), BorderLayout.CENTER);
+        responseRoleTabIndex = responseTabbedPane.getTabCount();
+        responseTabbedPane.addTab("Role Response", roleRespPanel);
+        responseTabbedPane.setEnabledAt(responseRoleTabIndex, false);
+
         responseDiffPane = createDiffPane();
         JScrollPane responseDiffScroll = new JScrollPane(responseDiffPane);
         responseDiffTabIndex = responseTabbedPane.getTabCount();
@@ -259,9 +260,15 @@ public class RequestTablePanel extends JPanel {
                 DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
                 centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
                 requestTable.getColumnModel().getColumn(8).setCellRenderer(centerRenderer);
+            }
 
-                // Set comparator for Unauth column
-                sorter.setComparator(8, java.util.Comparator.comparing(o -> (Boolean) o));
+            DefaultTableCellRenderer matrixRenderer = new DefaultTableCellRenderer();
+            matrixRenderer.setHorizontalAlignment(SwingConstants.CENTER);
+            for (int i = 0; i < columnCount; i++) {
+                if (requestLogModel.getMatrixRole(i) != null) {
+                    requestTable.getColumnModel().getColumn(i).setPreferredWidth(90);
+                    requestTable.getColumnModel().getColumn(i).setCellRenderer(matrixRenderer);
+                }
             }
 
             DefaultTableCellRenderer leftRenderer = new DefaultTableCellRenderer();
@@ -326,7 +333,7 @@ public class RequestTablePanel extends JPanel {
                 HttpResponse unauthResponse = entry.getUnauthResponse();
 
                 // Debug logging
-                api.logging().logToOutput("UI Display - Entry ID: " + entry.getId() +
+                log.debug(() -> "UI Display - Entry ID: " + entry.getId() +
                         ", wasModifiedSent: " + entry.wasModifiedRequestSent() +
                         ", originalResponse: "
                         + (originalResponse != null ? "present (" + originalResponse.statusCode() + ")" : "null") +
@@ -350,19 +357,17 @@ public class RequestTablePanel extends JPanel {
                 }
 
                 if (modifiedResponse != null) {
-                    api.logging().logToOutput(
-                            "  Setting modified response editor (case 1): status=" + modifiedResponse.statusCode());
+                    log.trace(() -> "  Setting modified response editor (case 1): status=" + modifiedResponse.statusCode());
                     modifiedResponseEditor.setResponse(modifiedResponse);
                     responseTabbedPane.setEnabledAt(1, true);
                 } else if (entry.wasModifiedRequestSent() && entry.getResponse() != null) {
                     // If modified request was sent but modifiedResponse is somehow null,
                     // the response we have IS the modified response
-                    api.logging().logToOutput(
-                            "  Setting modified response editor (case 2): status=" + entry.getResponse().statusCode());
+                    log.trace(() -> "  Setting modified response editor (case 2): status=" + entry.getResponse().statusCode());
                     modifiedResponseEditor.setResponse(entry.getResponse());
                     responseTabbedPane.setEnabledAt(1, true);
                 } else {
-                    api.logging().logToOutput("  Modified response tab disabled or cleared");
+                    log.trace(() -> "  Modified response tab disabled or cleared");
                     if (entry.getResponse() != null) {
                         modifiedResponseEditor.setResponse(entry.getResponse());
                     } else {
@@ -387,6 +392,8 @@ public class RequestTablePanel extends JPanel {
                     }
                 }
 
+                displaySelectedRoleResult();
+
                 if (unauthResponse != null) {
                     unauthResponseEditor.setResponse(unauthResponse);
                     responseTabbedPane.setEnabledAt(responseUnauthTabIndex, true);
@@ -401,12 +408,68 @@ public class RequestTablePanel extends JPanel {
         }
     }
 
-    public void applyFilter(RowFilter<RequestLogModel, Integer> filter) {
-        sorter.setRowFilter(filter);
+    /**
+     * Fills the role tabs from the selected row's role matrix: the role of the
+     * selected column, or the first role when another column is selected.
+     */
+    private void displaySelectedRoleResult() {
+        int selectedRow = requestTable.getSelectedRow();
+        RequestLogEntry entry = selectedRow >= 0
+                ? requestLogModel.getEntry(requestTable.convertRowIndexToModel(selectedRow))
+                : null;
+        RoleResult result = null;
+        if (entry != null && !entry.getRoleResults().isEmpty()) {
+            int selectedColumn = requestTable.getSelectedColumn();
+            String role = selectedColumn >= 0
+                    ? requestLogModel.getMatrixRole(requestTable.convertColumnIndexToModel(selectedColumn))
+                    : null;
+            result = role != null ? entry.getRoleResult(role) : null;
+            if (result == null) {
+                result = entry.getRoleResults().get(0);
+            }
+        }
+
+        if (result == null) {
+            requestTabbedPane.setTitleAt(requestRoleTabIndex, "Role Request");
+            responseTabbedPane.setTitleAt(responseRoleTabIndex, "Role Response");
+            requestTabbedPane.setEnabledAt(requestRoleTabIndex, false);
+            responseTabbedPane.setEnabledAt(responseRoleTabIndex, false);
+            if (requestTabbedPane.getSelectedIndex() == requestRoleTabIndex) {
+                requestTabbedPane.setSelectedIndex(0);
+            }
+            if (responseTabbedPane.getSelectedIndex() == responseRoleTabIndex) {
+                responseTabbedPane.setSelectedIndex(0);
+            }
+            return;
+        }
+
+        requestTabbedPane.setTitleAt(requestRoleTabIndex, "Request: " + result.getRole());
+        responseTabbedPane.setTitleAt(responseRoleTabIndex, "Response: " + result.getRole());
+        roleRequestEditor.setRequest(result.getRequest());
+        requestTabbedPane.setEnabledAt(requestRoleTabIndex, true);
+        roleResponseEditor.setResponse(result.getResponse());
+        responseTabbedPane.setEnabledAt(responseRoleTabIndex, result.getResponse() != null);
+        if (result.getResponse() == null && responseTabbedPane.getSelectedIndex() == responseRoleTabIndex) {
+            responseTabbedPane.setSelectedIndex(0);
+        }
+    }
+
+    public void applyFilter(LogFilter filter) {
+        panelFilter = filter;
+        applyFilters();
     }
 
     public void clearFilter() {
-        sorter.setRowFilter(null);
+        panelFilter = null;
+        applyFilters();
+    }
+
+    private void applyFilters() {
+        if (panelFilter != null && roleFilter != null) {
+            sorter.setFilter(LogFilter.all(java.util.List.of(panelFilter, roleFilter)));
+        } else {
+            sorter.setFilter(panelFilter != null ? panelFilter : roleFilter);
+        }
     }
 
     public void setHighlightRules(java.util.List<model.HighlightRule> rules) {
@@ -658,15 +721,18 @@ public class RequestTablePanel extends JPanel {
     private void updateFilter() {
         String text = userRoleFilterField.getText();
         if (text == null || text.trim().isEmpty()) {
-            sorter.setRowFilter(null);
+            roleFilter = null;
         } else {
             // Filter by "User Role" column (index 1)
             try {
-                sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text.trim(), 1));
+                roleFilter = LogFilter.roleMatches(
+                        java.util.regex.Pattern.compile("(?i)" + text.trim()).asPredicate());
             } catch (java.util.regex.PatternSyntaxException e) {
                 // Invalid regex, maybe fallback to literal contains?
                 // For now, ignore
+                return;
             }
         }
+        applyFilters();
     }
 }
@@ -1,15 +1,26 @@
 package ui;
 
 import burp.api.montoya.MontoyaApi;
+import handler.RequestHandler;
 import model.ExtensionConfig;
+import model.HostStats;
+import model.LogLevel;
+import model.OverflowPolicy;
+import model.SyntheticStats;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.function.Supplier;
 
 public class SettingsPanel extends JPanel {
+    private static final int MAX_HOSTS_SHOWN = 8;
+
     private final MontoyaApi api;
     private final ExtensionConfig config;
     private final Runnable onConfigChanged;
+    private final Supplier<SyntheticStats> syntheticStats;
+    private final Supplier<String> logStorageStats;
+    private final Timer statsTimer;
     
     private JCheckBox onlyInScopeCheckbox;
     private JCheckBox interceptEnabledCheckbox;
@@ -20,16 +31,64 @@ public class SettingsPanel extends JPanel {
     private JCheckBox applyToScannerCheckbox;
     private JCheckBox previewInProxyCheckbox;
     private JSpinner maxEntriesSpinner;
+    private JSpinner pendingTtlSpinner;
+    private JCheckBox diskBackedLogCheckbox;
+    private JCheckBox compressLogCheckbox;
+    private JLabel pendingStatsLabel;
+    private JLabel logStorageStatsLabel;
     private JButton safeModeBtn;
     private JCheckBox unauthenticatedTestingCheckbox;
     private JCheckBox applyRulesToUnauthCheckbox;
+    private JCheckBox roleMatrixCheckbox;
     private JCheckBox excludeStaticFilesCheckbox;
-
-    public SettingsPanel(MontoyaApi api, ExtensionConfig config, Runnable onConfigChanged) {
+    private JTextField staticExtensionsField;
+    private JCheckBox staticContentTypeCheckbox;
+    private JComboBox<LogLevel> logLevelCombo;
+    private JSpinner syntheticConcurrencySpinner;
+    private JSpinner syntheticPerHostSpinner;
+    private JSpinner syntheticQueueSpinner;
+    private JComboBox<OverflowPolicy> overflowPolicyCombo;
+    private JCheckBox virtualThreadsCheckbox;
+    private JCheckBox adaptiveConcurrencyCheckbox;
+    private JSpinner unauthCacheTtlSpinner;
+    private JSpinner unauthCacheSizeSpinner;
+    private JSpinner rateLimitSpinner;
+    private JSpinner rateBurstSpinner;
+    private JTextField toolPriorityField;
+    private JSpinner timeoutSpinner;
+    private JSpinner retriesSpinner;
+    private JSpinner backoffSpinner;
+    private JSpinner priorityAgingSpinner;
+    private JLabel hostStatsLabel;
+    private JLabel syntheticStatsLabel;
+
+    public SettingsPanel(MontoyaApi api, ExtensionConfig config, Runnable onConfigChanged,
+            Supplier<SyntheticStats> syntheticStats, Supplier<String> logStorageStats) {
         this.api = api;
         this.config = config;
         this.onConfigChanged = onConfigChanged;
+        this.syntheticStats = syntheticStats;
+        this.logStorageStats = logStorageStats;
         initializeUI();
+
+        // Live scheduler counters, only refreshed while the tab is visible
+        statsTimer = new Timer(1000, e -> {
+            if (isShowing()) {
+                refreshSyntheticStats();
+            }
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        statsTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        statsTimer.stop();
+        super.removeNotify();
     }
 
     private void initializeUI() {
@@ -71,6 +130,38 @@ public class SettingsPanel extends JPanel {
         });
         scopePanel.add(excludeStaticFilesCheckbox);
 
+        JPanel extensionsRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        extensionsRow.setAlignmentX(Component.LEFT_ALIGNMENT);
+        extensionsRow.add(new JLabel("Static extensions:"));
+        staticExtensionsField = new JTextField(config.getStaticFileExtensions(), 40);
+        staticExtensionsField.setToolTipText("Comma separated, e.g. png,css,js");
+        staticExtensionsField.addActionListener(e -> applyStaticExtensions());
+        staticExtensionsField.addFocusListener(new java.awt.event.FocusAdapter() {
+            @Override
+            public void focusLost(java.awt.event.FocusEvent e) {
+                applyStaticExtensions();
+            }
+        });
+        extensionsRow.add(staticExtensionsField);
+        JButton resetExtensionsButton = new JButton("Reset");
+        resetExtensionsButton.addActionListener(e -> {
+            staticExtensionsField.setText(ExtensionConfig.DEFAULT_STATIC_FILE_EXTENSIONS);
+            applyStaticExtensions();
+        });
+        extensionsRow.add(resetExtensionsButton);
+        scopePanel.add(extensionsRow);
+
+        staticContentTypeCheckbox = new JCheckBox("Also treat static Content-Type responses as static files");
+        staticContentTypeCheckbox.setSelected(config.isStaticContentTypeCheck());
+        staticContentTypeCheckbox.setToolTipText(
+                "Catches extensionless assets by their image, font, media, CSS or script Content-Type; "
+                + "a URL is skipped once one of its responses was seen");
+        staticContentTypeCheckbox.addActionListener(e -> {
+            config.setStaticContentTypeCheck(staticContentTypeCheckbox.isSelected());
+            notifyConfigChanged();
+        });
+        scopePanel.add(staticContentTypeCheckbox);
+
         settingsContainer.add(scopePanel);
         settingsContainer.add(Box.createVerticalStrut(10));
 
@@ -122,6 +213,14 @@ public class SettingsPanel extends JPanel {
         applyRulesToUnauthCheckbox.setEnabled(config.isUnauthenticatedTesting());
         interceptPanel.add(applyRulesToUnauthCheckbox);
 
+        roleMatrixCheckbox = new JCheckBox("Role matrix (replay each request as every enabled role and without auth)");
+        roleMatrixCheckbox.setSelected(config.isRoleMatrix());
+        roleMatrixCheckbox.addActionListener(e -> {
+            config.setRoleMatrix(roleMatrixCheckbox.isSelected());
+            notifyConfigChanged();
+        });
+        interceptPanel.add(roleMatrixCheckbox);
+
     settingsContainer.add(interceptPanel);
     settingsContainer.add(Box.createVerticalStrut(10));
 
@@ -132,7 +231,7 @@ public class SettingsPanel extends JPanel {
 
         JPanel spinnerRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
         spinnerRow.add(new JLabel("Maximum stored log entries:"));
-        maxEntriesSpinner = new JSpinner(new SpinnerNumberModel(config.getMaxLogEntries(), 100, 100000, 100));
+        maxEntriesSpinner = new JSpinner(new SpinnerNumberModel(config.getMaxLogEntries(), 100, 1000000, 100));
         maxEntriesSpinner.addChangeListener(e -> {
             int selected = (int) maxEntriesSpinner.getValue();
             config.setMaxLogEntries(selected);
@@ -146,6 +245,46 @@ public class SettingsPanel extends JPanel {
         retentionHint.setFont(retentionHint.getFont().deriveFont(Font.ITALIC, retentionHint.getFont().getSize() - 1f));
         retentionPanel.add(retentionHint);
 
+        diskBackedLogCheckbox = new JCheckBox("Keep older messages on disk");
+        diskBackedLogCheckbox.setSelected(config.isDiskBackedLog());
+        diskBackedLogCheckbox.setToolTipText("Only the newest rows keep their requests and responses in memory; "
+                + "older ones are written to temporary files and loaded when selected.");
+        diskBackedLogCheckbox.addActionListener(e -> {
+            config.setDiskBackedLog(diskBackedLogCheckbox.isSelected());
+            notifyConfigChanged();
+        });
+        retentionPanel.add(diskBackedLogCheckbox);
+
+        compressLogCheckbox = new JCheckBox("Compress older messages in memory");
+        compressLogCheckbox.setSelected(config.isCompressLogMessages());
+        compressLogCheckbox.setEnabled(!config.isDiskBackedLog());
+        compressLogCheckbox.setToolTipText("Older rows keep their requests and responses deflate-compressed "
+                + "and decompress them when selected.");
+        compressLogCheckbox.addActionListener(e -> {
+            config.setCompressLogMessages(compressLogCheckbox.isSelected());
+            notifyConfigChanged();
+        });
+        retentionPanel.add(compressLogCheckbox);
+
+        logStorageStatsLabel = new JLabel(" ");
+        logStorageStatsLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 0));
+        retentionPanel.add(logStorageStatsLabel);
+
+        JPanel pendingRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        pendingRow.add(new JLabel("Log requests without a response after (s):"));
+        pendingTtlSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getPendingResponseTtlSeconds(), 10, 86400, 10));
+        pendingTtlSpinner.addChangeListener(e -> {
+            config.setPendingResponseTtlSeconds((int) pendingTtlSpinner.getValue());
+            notifyConfigChanged();
+        });
+        pendingRow.add(pendingTtlSpinner);
+        retentionPanel.add(pendingRow);
+
+        pendingStatsLabel = new JLabel(" ");
+        pendingStatsLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 0));
+        retentionPanel.add(pendingStatsLabel);
+
         settingsContainer.add(retentionPanel);
         settingsContainer.add(Box.createVerticalStrut(10));
 
@@ -215,12 +354,208 @@ public class SettingsPanel extends JPanel {
     settingsContainer.add(toolsPanel);
     settingsContainer.add(Box.createVerticalStrut(10));
 
+        JPanel syntheticPanel = new JPanel();
+        syntheticPanel.setLayout(new BoxLayout(syntheticPanel, BoxLayout.Y_AXIS));
+        syntheticPanel.setBorder(BorderFactory.createTitledBorder("Unauth / Preview Requests"));
+        syntheticPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        JPanel concurrencyRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        concurrencyRow.add(new JLabel("Max concurrent:"));
+        syntheticConcurrencySpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticMaxConcurrency(), 1, 4096, 1));
+        syntheticConcurrencySpinner.setToolTipText(
+                "Values above 256 need virtual threads; on platform threads the limit stays at 256.");
+        syntheticConcurrencySpinner.addChangeListener(e -> {
+            config.setSyntheticMaxConcurrency((int) syntheticConcurrencySpinner.getValue());
+            notifyConfigChanged();
+        });
+        concurrencyRow.add(syntheticConcurrencySpinner);
+        concurrencyRow.add(new JLabel("Per host:"));
+        syntheticPerHostSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticPerHostConcurrency(), 1, 4096, 1));
+        syntheticPerHostSpinner.addChangeListener(e -> {
+            config.setSyntheticPerHostConcurrency((int) syntheticPerHostSpinner.getValue());
+            notifyConfigChanged();
+        });
+        concurrencyRow.add(syntheticPerHostSpinner);
+        adaptiveConcurrencyCheckbox = new JCheckBox("Adapt to latency");
+        adaptiveConcurrencyCheckbox.setSelected(config.isSyntheticAdaptiveConcurrency());
+        adaptiveConcurrencyCheckbox.setToolTipText(
+                "Raise the limit while latency is flat, cut it when latency or 5xx/429 responses climb. "
+                        + "Max concurrent becomes the ceiling.");
+        adaptiveConcurrencyCheckbox.addActionListener(e -> {
+            config.setSyntheticAdaptiveConcurrency(adaptiveConcurrencyCheckbox.isSelected());
+            notifyConfigChanged();
+        });
+        concurrencyRow.add(adaptiveConcurrencyCheckbox);
+        syntheticPanel.add(concurrencyRow);
+
+        JPanel queueRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        queueRow.add(new JLabel("Queue size:"));
+        syntheticQueueSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticQueueCapacity(), 10, 100000, 50));
+        syntheticQueueSpinner.addChangeListener(e -> {
+            config.setSyntheticQueueCapacity((int) syntheticQueueSpinner.getValue());
+            notifyConfigChanged();
+        });
+        queueRow.add(syntheticQueueSpinner);
+        queueRow.add(new JLabel("When full:"));
+        overflowPolicyCombo = new JComboBox<>(OverflowPolicy.values());
+        overflowPolicyCombo.setSelectedItem(config.getSyntheticOverflowPolicy());
+        overflowPolicyCombo.addActionListener(e -> {
+            OverflowPolicy selected = (OverflowPolicy) overflowPolicyCombo.getSelectedItem();
+            if (selected != null && selected != config.getSyntheticOverflowPolicy()) {
+                config.setSyntheticOverflowPolicy(selected);
+                notifyConfigChanged();
+            }
+        });
+        queueRow.add(overflowPolicyCombo);
+        syntheticPanel.add(queueRow);
+
+        virtualThreadsCheckbox = new JCheckBox("Send on virtual threads (Java 21+)");
+        virtualThreadsCheckbox.setSelected(config.isSyntheticVirtualThreads());
+        if (!RequestHandler.isVirtualThreadsSupported()) {
+            virtualThreadsCheckbox.setEnabled(false);
+            virtualThreadsCheckbox.setToolTipText("Burp is running on a Java version without virtual threads.");
+        }
+        virtualThreadsCheckbox.addActionListener(e -> {
+            config.setSyntheticVirtualThreads(virtualThreadsCheckbox.isSelected());
+            notifyConfigChanged();
+        });
+        syntheticPanel.add(virtualThreadsCheckbox);
+
+        JPanel cacheRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        cacheRow.add(new JLabel("Reuse identical unauth responses for (s, 0 = off):"));
+        unauthCacheTtlSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getUnauthCacheTtlSeconds(), 0, 3600, 5));
+        unauthCacheTtlSpinner.addChangeListener(e -> {
+            config.setUnauthCacheTtlSeconds((int) unauthCacheTtlSpinner.getValue());
+            notifyConfigChanged();
+        });
+        cacheRow.add(unauthCacheTtlSpinner);
+        cacheRow.add(new JLabel("Max entries:"));
+        unauthCacheSizeSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getUnauthCacheMaxEntries(), 10, 100000, 100));
+        unauthCacheSizeSpinner.addChangeListener(e -> {
+            config.setUnauthCacheMaxEntries((int) unauthCacheSizeSpinner.getValue());
+            notifyConfigChanged();
+        });
+        cacheRow.add(unauthCacheSizeSpinner);
+        syntheticPanel.add(cacheRow);
+
+        JPanel rateRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        rateRow.add(new JLabel("Per-host rate limit (req/s, 0 = off):"));
+        rateLimitSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticRatePerSecond(), 0, 1000, 1));
+        rateLimitSpinner.addChangeListener(e -> {
+            config.setSyntheticRatePerSecond((int) rateLimitSpinner.getValue());
+            notifyConfigChanged();
+        });
+        rateRow.add(rateLimitSpinner);
+        rateRow.add(new JLabel("Burst:"));
+        rateBurstSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticRateBurst(), 1, 1000, 1));
+        rateBurstSpinner.addChangeListener(e -> {
+            config.setSyntheticRateBurst((int) rateBurstSpinner.getValue());
+            notifyConfigChanged();
+        });
+        rateRow.add(rateBurstSpinner);
+        syntheticPanel.add(rateRow);
+
+        JPanel timeoutRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        timeoutRow.add(new JLabel("Timeout (ms):"));
+        timeoutSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticTimeoutMillis(), 1000, 300000, 1000));
+        timeoutSpinner.addChangeListener(e -> {
+            config.setSyntheticTimeoutMillis((int) timeoutSpinner.getValue());
+            notifyConfigChanged();
+        });
+        timeoutRow.add(timeoutSpinner);
+        timeoutRow.add(new JLabel("Retries on connection error:"));
+        retriesSpinner = new JSpinner(new SpinnerNumberModel(config.getSyntheticMaxRetries(), 0, 5, 1));
+        retriesSpinner.addChangeListener(e -> {
+            config.setSyntheticMaxRetries((int) retriesSpinner.getValue());
+            notifyConfigChanged();
+        });
+        timeoutRow.add(retriesSpinner);
+        timeoutRow.add(new JLabel("Backoff (ms):"));
+        backoffSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticRetryBackoffMillis(), 50, 10000, 50));
+        backoffSpinner.addChangeListener(e -> {
+            config.setSyntheticRetryBackoffMillis((int) backoffSpinner.getValue());
+            notifyConfigChanged();
+        });
+        timeoutRow.add(backoffSpinner);
+        syntheticPanel.add(timeoutRow);
+
+        JPanel priorityRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        priorityRow.add(new JLabel("Tool priority:"));
+        toolPriorityField = new JTextField(config.getSyntheticToolPriority(), 24);
+        toolPriorityField.setToolTipText("Most urgent first, e.g. REPEATER,INTRUDER,PROXY,SCANNER");
+        toolPriorityField.addActionListener(e -> applyToolPriority());
+        toolPriorityField.addFocusListener(new java.awt.event.FocusAdapter() {
+            @Override
+            public void focusLost(java.awt.event.FocusEvent e) {
+                applyToolPriority();
+            }
+        });
+        priorityRow.add(toolPriorityField);
+        priorityRow.add(new JLabel("Aging (ms per level):"));
+        priorityAgingSpinner = new JSpinner(
+                new SpinnerNumberModel(config.getSyntheticPriorityAgingMillis(), 0, 600000, 500));
+        priorityAgingSpinner.addChangeListener(e -> {
+            config.setSyntheticPriorityAgingMillis((int) priorityAgingSpinner.getValue());
+            notifyConfigChanged();
+        });
+        priorityRow.add(priorityAgingSpinner);
+        syntheticPanel.add(priorityRow);
+
+        syntheticStatsLabel = new JLabel(" ");
+        syntheticStatsLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 5, 5));
+        syntheticPanel.add(syntheticStatsLabel);
+        hostStatsLabel = new JLabel(" ");
+        hostStatsLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 5, 5));
+        hostStatsLabel.setFont(new Font(Font.MONOSPACED, Font.PLAIN, hostStatsLabel.getFont().getSize()));
+        syntheticPanel.add(hostStatsLabel);
+        refreshSyntheticStats();
+
+        settingsContainer.add(syntheticPanel);
+        settingsContainer.add(Box.createVerticalStrut(10));
+
+        JPanel diagnosticsPanel = new JPanel();
+        diagnosticsPanel.setLayout(new BoxLayout(diagnosticsPanel, BoxLayout.Y_AXIS));
+        diagnosticsPanel.setBorder(BorderFactory.createTitledBorder("Diagnostics"));
+        diagnosticsPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        JPanel logLevelRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        logLevelRow.add(new JLabel("Output log level:"));
+        logLevelCombo = new JComboBox<>(LogLevel.values());
+        logLevelCombo.setSelectedItem(config.getLogLevel());
+        logLevelCombo.addActionListener(e -> {
+            LogLevel selected = (LogLevel) logLevelCombo.getSelectedItem();
+            if (selected != null && selected != config.getLogLevel()) {
+                config.setLogLevel(selected);
+                notifyConfigChanged();
+            }
+        });
+        logLevelRow.add(logLevelCombo);
+        diagnosticsPanel.add(logLevelRow);
+
+        JLabel logLevelHint = new JLabel("Debug and Trace log every request and rule; keep them off under load.");
+        logLevelHint.setFont(logLevelHint.getFont().deriveFont(Font.ITALIC, logLevelHint.getFont().getSize() - 1f));
+        diagnosticsPanel.add(logLevelHint);
+
+        settingsContainer.add(diagnosticsPanel);
+        settingsContainer.add(Box.createVerticalStrut(10));
+
         add(settingsContainer, BorderLayout.NORTH);
     }
 
     public void refreshFromConfig() {
         onlyInScopeCheckbox.setSelected(config.isOnlyInScope());
         excludeStaticFilesCheckbox.setSelected(config.isExcludeStaticFiles());
+        staticExtensionsField.setText(config.getStaticFileExtensions());
+        staticContentTypeCheckbox.setSelected(config.isStaticContentTypeCheck());
         interceptEnabledCheckbox.setSelected(config.isInterceptEnabled());
         autoModifyCheckbox.setSelected(config.isAutoModifyRequests());
         applyToProxyCheckbox.setSelected(config.isApplyToProxy());
@@ -228,6 +563,9 @@ public class SettingsPanel extends JPanel {
         applyToIntruderCheckbox.setSelected(config.isApplyToIntruder());
         applyToScannerCheckbox.setSelected(config.isApplyToScanner());
         previewInProxyCheckbox.setSelected(config.isPreviewInProxy());
+        if (roleMatrixCheckbox != null) {
+            roleMatrixCheckbox.setSelected(config.isRoleMatrix());
+        }
         if (unauthenticatedTestingCheckbox != null) {
             unauthenticatedTestingCheckbox.setSelected(config.isUnauthenticatedTesting());
         }
@@ -238,6 +576,96 @@ public class SettingsPanel extends JPanel {
         if (maxEntriesSpinner != null) {
             maxEntriesSpinner.setValue(config.getMaxLogEntries());
         }
+        if (pendingTtlSpinner != null) {
+            pendingTtlSpinner.setValue(config.getPendingResponseTtlSeconds());
+        }
+        if (diskBackedLogCheckbox != null) {
+            diskBackedLogCheckbox.setSelected(config.isDiskBackedLog());
+            compressLogCheckbox.setSelected(config.isCompressLogMessages());
+            compressLogCheckbox.setEnabled(!config.isDiskBackedLog());
+        }
+        if (logLevelCombo != null) {
+            logLevelCombo.setSelectedItem(config.getLogLevel());
+        }
+        if (syntheticConcurrencySpinner != null) {
+            syntheticConcurrencySpinner.setValue(config.getSyntheticMaxConcurrency());
+            syntheticPerHostSpinner.setValue(config.getSyntheticPerHostConcurrency());
+            syntheticQueueSpinner.setValue(config.getSyntheticQueueCapacity());
+            overflowPolicyCombo.setSelectedItem(config.getSyntheticOverflowPolicy());
+            virtualThreadsCheckbox.setSelected(config.isSyntheticVirtualThreads());
+            adaptiveConcurrencyCheckbox.setSelected(config.isSyntheticAdaptiveConcurrency());
+            unauthCacheTtlSpinner.setValue(config.getUnauthCacheTtlSeconds());
+            unauthCacheSizeSpinner.setValue(config.getUnauthCacheMaxEntries());
+            rateLimitSpinner.setValue(config.getSyntheticRatePerSecond());
+            rateBurstSpinner.setValue(config.getSyntheticRateBurst());
+            toolPriorityField.setText(config.getSyntheticToolPriority());
+            timeoutSpinner.setValue(config.getSyntheticTimeoutMillis());
+            retriesSpinner.setValue(config.getSyntheticMaxRetries());
+            backoffSpinner.setValue(config.getSyntheticRetryBackoffMillis());
+            priorityAgingSpinner.setValue(config.getSyntheticPriorityAgingMillis());
+        }
+    }
+
+    private void refreshSyntheticStats() {
+        if (logStorageStats != null && logStorageStatsLabel != null) {
+            String storage = logStorageStats.get();
+            logStorageStatsLabel.setText(storage != null ? storage : " ");
+        }
+        if (syntheticStats == null || syntheticStatsLabel == null) {
+            return;
+        }
+        SyntheticStats stats = syntheticStats.get();
+        if (stats != null) {
+            syntheticStatsLabel.setText(stats.describe());
+            hostStatsLabel.setText(describeHosts(stats));
+            pendingStatsLabel.setText(stats.describePending());
+        }
+    }
+
+    private static String describeHosts(SyntheticStats stats) {
+        if (stats.getHosts().isEmpty()) {
+            return " ";
+        }
+        StringBuilder html = new StringBuilder("<html>");
+        int shown = 0;
+        for (HostStats host : stats.getHosts()) {
+            if (shown++ == MAX_HOSTS_SHOWN) {
+                html.append("... ").append(stats.getHosts().size() - MAX_HOSTS_SHOWN).append(" more<br>");
+                break;
+            }
+            html.append(escapeHtml(host.getHost()))
+                    .append(": queued ").append(host.getQueued())
+                    .append(", in flight ").append(host.getInFlight());
+            if (host.getTokens() >= 0) {
+                html.append(String.format(", tokens %.1f", host.getTokens()));
+            }
+            html.append("<br>");
+        }
+        return html.append("</html>").toString();
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private void applyStaticExtensions() {
+        String text = staticExtensionsField.getText().trim();
+        if (text.equals(config.getStaticFileExtensions())) {
+            return;
+        }
+        config.setStaticFileExtensions(text);
+        api.logging().logToOutput("Static file extensions: " + config.getStaticFileExtensions());
+        notifyConfigChanged();
+    }
+
+    private void applyToolPriority() {
+        String text = toolPriorityField.getText().trim();
+        if (text.equals(config.getSyntheticToolPriority())) {
+            return;
+        }
+        config.setSyntheticToolPriority(text);
+        toolPriorityField.setText(config.getSyntheticToolPriority());
+        notifyConfigChanged();
     }
 
     private void notifyConfigChanged() {
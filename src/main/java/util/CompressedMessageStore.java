@@ -0,0 +1,133 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Heap storage that keeps messages deflate-compressed.
+ * <p>
+ * Messages of at least {@link #COMPRESSION_THRESHOLD} bytes are compressed
+ * with {@link Deflater#BEST_SPEED}; smaller ones, and ones that do not
+ * shrink, are kept as they are. The lowest bit of the handle records which.
+ * The most recently read messages are kept decompressed in a small LRU, so
+ * repainting the same rows or switching between editor tabs does not inflate
+ * the same bytes again.
+ */
+public final class CompressedMessageStore implements MessageStorage {
+    private static final int COMPRESSION_THRESHOLD = 512;
+    private static final int HOT_MESSAGES = 128;
+
+    private final Map<Long, byte[]> blobs = new HashMap<>();
+    private final LinkedHashMap<Long, byte[]> hot = new LinkedHashMap<>(HOT_MESSAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > HOT_MESSAGES;
+        }
+    };
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private long nextId;
+    private long rawBytes;
+    private long storedBytes;
+
+    @Override
+    public synchronized long append(byte[] bytes) {
+        byte[] compressed = bytes.length >= COMPRESSION_THRESHOLD ? deflate(bytes) : null;
+        boolean isCompressed = compressed != null && compressed.length < bytes.length;
+        byte[] blob = isCompressed ? compressed : bytes.clone();
+        long handle = (nextId++ << 1) | (isCompressed ? 1 : 0);
+        blobs.put(handle, blob);
+        rawBytes += bytes.length;
+        storedBytes += blob.length;
+        return handle;
+    }
+
+    @Override
+    public synchronized byte[] read(long handle) {
+        byte[] blob = blobs.get(handle);
+        if (blob == null || (handle & 1) == 0) {
+            return blob;
+        }
+        byte[] bytes = hot.get(handle);
+        if (bytes == null) {
+            bytes = inflate(blob);
+            if (bytes != null) {
+                hot.put(handle, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized void release(long handle) {
+        byte[] blob = blobs.remove(handle);
+        hot.remove(handle);
+        if (blob != null) {
+            storedBytes -= blob.length;
+            rawBytes -= (handle & 1) == 0 ? blob.length : inflatedLength(blob);
+        }
+    }
+
+    /** Uncompressed size of the messages held. */
+    public synchronized long rawBytes() {
+        return rawBytes;
+    }
+
+    /** Heap used by the messages held, after compression. */
+    public synchronized long storedBytes() {
+        return storedBytes;
+    }
+
+    private byte[] deflate(byte[] bytes) {
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+            if (out.size() >= bytes.length) {
+                // Not worth it; the caller keeps the raw bytes
+                return null;
+            }
+        }
+        // The raw length goes first so inflate can size its buffer exactly
+        byte[] body = out.toByteArray();
+        byte[] blob = new byte[body.length + 4];
+        blob[0] = (byte) (bytes.length >>> 24);
+        blob[1] = (byte) (bytes.length >>> 16);
+        blob[2] = (byte) (bytes.length >>> 8);
+        blob[3] = (byte) bytes.length;
+        System.arraycopy(body, 0, blob, 4, body.length);
+        return blob;
+    }
+
+    private byte[] inflate(byte[] blob) {
+        byte[] bytes = new byte[inflatedLength(blob)];
+        inflater.reset();
+        inflater.setInput(blob, 4, blob.length - 4);
+        try {
+            int offset = 0;
+            while (offset < bytes.length && !inflater.finished()) {
+                int n = inflater.inflate(bytes, offset, bytes.length - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                offset += n;
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            return null;
+        }
+    }
+
+    private static int inflatedLength(byte[] blob) {
+        return ((blob[0] & 0xff) << 24) | ((blob[1] & 0xff) << 16) | ((blob[2] & 0xff) << 8) | (blob[3] & 0xff);
+    }
+}
@@ -0,0 +1,60 @@
+package util;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 64-bit content hash of HTTP messages, used instead of comparing full
+ * {@code toString()} renderings when all that is needed is "did it change".
+ */
+public final class ContentFingerprint {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long MULTIPLIER = 0xBF58476D1CE4E5B9L;
+
+    private ContentFingerprint() {
+    }
+
+    public static long of(HttpRequest request) {
+        return request == null ? 0L : of(request.toByteArray());
+    }
+
+    public static long of(ByteArray bytes) {
+        return bytes == null ? 0L : of(bytes.getBytes());
+    }
+
+    public static long of(byte[] bytes) {
+        if (bytes == null) {
+            return 0L;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long hash = SEED ^ bytes.length;
+        int words = bytes.length >>> 3;
+        for (int i = 0; i < words; i++) {
+            hash = mix(hash ^ buffer.getLong(i << 3));
+        }
+        long tail = 0;
+        for (int i = words << 3; i < bytes.length; i++) {
+            tail = (tail << 8) | (bytes[i] & 0xFF);
+        }
+        return mix(hash ^ tail);
+    }
+
+    /**
+     * Returns true when both requests are present and their content differs.
+     */
+    public static boolean differ(HttpRequest original, HttpRequest modified) {
+        if (original == null || modified == null || original == modified) {
+            return false;
+        }
+        return of(original) != of(modified);
+    }
+
+    private static long mix(long value) {
+        long z = value * MULTIPLIER;
+        z = (z ^ (z >>> 31)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 29);
+    }
+}
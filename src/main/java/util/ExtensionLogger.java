@@ -0,0 +1,158 @@
+package util;
+
+import burp.api.montoya.logging.Logging;
+import model.ExtensionConfig;
+import model.LogLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Level-gated, asynchronous front end for Burp's output and error streams.
+ * <p>
+ * Messages are passed as suppliers and only built when their level is enabled
+ * in {@link ExtensionConfig#getLogLevel()}. Built lines go into a bounded
+ * queue that a single daemon thread drains in batches, so request handling
+ * never waits on the Burp output tab. When the queue is full the oldest line is
+ * dropped and the number of dropped lines is reported with the next batch.
+ * Errors are written regardless of the configured level.
+ */
+public final class ExtensionLogger {
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_BATCH = 256;
+
+    private final Logging output;
+    private final ExtensionConfig config;
+    private final ArrayBlockingQueue<Line> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public ExtensionLogger(Logging output, ExtensionConfig config) {
+        this(output, config, DEFAULT_CAPACITY);
+    }
+
+    public ExtensionLogger(Logging output, ExtensionConfig config, int capacity) {
+        this.output = output;
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, capacity));
+        this.drainer = new Thread(this::drainLoop, "auth-mutator-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public boolean isEnabled(LogLevel level) {
+        LogLevel current = config.getLogLevel();
+        return level != LogLevel.OFF && current != null && current.ordinal() >= level.ordinal();
+    }
+
+    public void info(Supplier<String> message) {
+        log(LogLevel.INFO, message);
+    }
+
+    public void debug(Supplier<String> message) {
+        log(LogLevel.DEBUG, message);
+    }
+
+    public void trace(Supplier<String> message) {
+        log(LogLevel.TRACE, message);
+    }
+
+    public void log(LogLevel level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            enqueue(new Line(false, message.get()));
+        }
+    }
+
+    public void error(String message) {
+        enqueue(new Line(true, message));
+    }
+
+    /**
+     * Stops the drain thread and writes whatever is still queued.
+     */
+    public void shutdown() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Line> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        write(rest);
+    }
+
+    private void enqueue(Line line) {
+        while (!queue.offer(line)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private void drainLoop() {
+        List<Line> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                Line first = queue.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // Never let a logging failure kill the drain thread
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Line> batch) {
+        long lost = dropped.getAndSet(0);
+        StringBuilder pending = new StringBuilder();
+        if (lost > 0) {
+            pending.append("[").append(lost).append(" log lines dropped]");
+        }
+        for (Line line : batch) {
+            if (line.error) {
+                flush(pending);
+                output.logToError(line.text);
+            } else {
+                if (pending.length() > 0) {
+                    pending.append('\n');
+                }
+                pending.append(line.text);
+            }
+        }
+        flush(pending);
+    }
+
+    private void flush(StringBuilder pending) {
+        if (pending.length() > 0) {
+            output.logToOutput(pending.toString());
+            pending.setLength(0);
+        }
+    }
+
+    private static final class Line {
+        final boolean error;
+        final String text;
+
+        Line(boolean error, String text) {
+            this.error = error;
+            this.text = text;
+        }
+    }
+}
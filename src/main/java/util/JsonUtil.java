@@ -5,6 +5,8 @@ import model.ExtensionConfig;
 import model.ExtensionState;
 import model.HighlightCondition;
 import model.HighlightRule;
+import model.LogLevel;
+import model.OverflowPolicy;
 import model.ReplaceRule;
 import model.UserRole;
 import org.json.JSONArray;
@@ -31,6 +33,9 @@ public class JsonUtil {
             JSONObject ruleObj = new JSONObject();
             ruleObj.putValue("name", rule.getName());
             ruleObj.putValue("enabled", rule.isEnabled());
+            ruleObj.putValue("hostPattern", rule.getHostPattern());
+            ruleObj.putValue("pathPrefix", rule.getPathPrefix());
+            ruleObj.putValue("method", rule.getMethod());
 
             JSONArray operations = new JSONArray();
             for (ReplaceRule.ReplaceOperation operation : rule.getOperations()) {
@@ -54,6 +59,9 @@ public class JsonUtil {
             }
             ReplaceRule rule = new ReplaceRule(obj.optString("name", ""));
             rule.setEnabled(obj.optBoolean("enabled", true));
+            rule.setHostPattern(obj.optString("hostPattern", ""));
+            rule.setPathPrefix(obj.optString("pathPrefix", ""));
+            rule.setMethod(obj.optString("method", ""));
 
             JSONArray operations = obj.optJSONArray("operations");
             List<ReplaceRule.ReplaceOperation> operationList = new ArrayList<>();
@@ -216,12 +224,35 @@ public class JsonUtil {
         obj.putValue("autoModifyRequests", config.isAutoModifyRequests());
         obj.putValue("unauthenticatedTesting", config.isUnauthenticatedTesting());
         obj.putValue("applyRulesToUnauthenticatedRequest", config.isApplyRulesToUnauthenticatedRequest());
+        obj.putValue("excludeStaticFiles", config.isExcludeStaticFiles());
+        obj.putValue("staticFileExtensions", config.getStaticFileExtensions());
+        obj.putValue("staticContentTypeCheck", config.isStaticContentTypeCheck());
+        obj.putValue("roleMatrix", config.isRoleMatrix());
         obj.putValue("applyToProxy", config.isApplyToProxy());
         obj.putValue("applyToRepeater", config.isApplyToRepeater());
         obj.putValue("applyToIntruder", config.isApplyToIntruder());
         obj.putValue("applyToScanner", config.isApplyToScanner());
         obj.putValue("previewInProxy", config.isPreviewInProxy());
         obj.putValue("maxLogEntries", config.getMaxLogEntries());
+        obj.putValue("diskBackedLog", config.isDiskBackedLog());
+        obj.putValue("compressLogMessages", config.isCompressLogMessages());
+        obj.putValue("pendingResponseTtlSeconds", config.getPendingResponseTtlSeconds());
+        obj.putValue("logLevel", config.getLogLevel().name());
+        obj.putValue("syntheticMaxConcurrency", config.getSyntheticMaxConcurrency());
+        obj.putValue("syntheticPerHostConcurrency", config.getSyntheticPerHostConcurrency());
+        obj.putValue("syntheticQueueCapacity", config.getSyntheticQueueCapacity());
+        obj.putValue("syntheticOverflowPolicy", config.getSyntheticOverflowPolicy().name());
+        obj.putValue("syntheticVirtualThreads", config.isSyntheticVirtualThreads());
+        obj.putValue("syntheticAdaptiveConcurrency", config.isSyntheticAdaptiveConcurrency());
+        obj.putValue("syntheticRatePerSecond", config.getSyntheticRatePerSecond());
+        obj.putValue("syntheticRateBurst", config.getSyntheticRateBurst());
+        obj.putValue("syntheticTimeoutMillis", config.getSyntheticTimeoutMillis());
+        obj.putValue("syntheticMaxRetries", config.getSyntheticMaxRetries());
+        obj.putValue("syntheticRetryBackoffMillis", config.getSyntheticRetryBackoffMillis());
+        obj.putValue("syntheticToolPriority", config.getSyntheticToolPriority());
+        obj.putValue("syntheticPriorityAgingMillis", config.getSyntheticPriorityAgingMillis());
+        obj.putValue("unauthCacheTtlSeconds", config.getUnauthCacheTtlSeconds());
+        obj.putValue("unauthCacheMaxEntries", config.getUnauthCacheMaxEntries());
         return obj;
     }
 
@@ -235,12 +266,51 @@ public class JsonUtil {
         config.setAutoModifyRequests(obj.optBoolean("autoModifyRequests", true));
         config.setUnauthenticatedTesting(obj.optBoolean("unauthenticatedTesting", false));
         config.setApplyRulesToUnauthenticatedRequest(obj.optBoolean("applyRulesToUnauthenticatedRequest", false));
+        config.setExcludeStaticFiles(obj.optBoolean("excludeStaticFiles", true));
+        config.setStaticFileExtensions(obj.optString("staticFileExtensions",
+                ExtensionConfig.DEFAULT_STATIC_FILE_EXTENSIONS));
+        config.setStaticContentTypeCheck(obj.optBoolean("staticContentTypeCheck", false));
+        config.setRoleMatrix(obj.optBoolean("roleMatrix", false));
         config.setApplyToProxy(obj.optBoolean("applyToProxy", false));
         config.setApplyToRepeater(obj.optBoolean("applyToRepeater", true));
         config.setApplyToIntruder(obj.optBoolean("applyToIntruder", true));
         config.setApplyToScanner(obj.optBoolean("applyToScanner", false));
         config.setPreviewInProxy(obj.optBoolean("previewInProxy", true));
         config.setMaxLogEntries(obj.optInt("maxLogEntries", config.getMaxLogEntries()));
+        config.setDiskBackedLog(obj.optBoolean("diskBackedLog", config.isDiskBackedLog()));
+        config.setCompressLogMessages(obj.optBoolean("compressLogMessages", config.isCompressLogMessages()));
+        config.setPendingResponseTtlSeconds(
+                obj.optInt("pendingResponseTtlSeconds", config.getPendingResponseTtlSeconds()));
+        try {
+            config.setLogLevel(LogLevel.valueOf(obj.optString("logLevel", LogLevel.INFO.name())));
+        } catch (IllegalArgumentException ex) {
+            config.setLogLevel(LogLevel.INFO);
+        }
+        config.setSyntheticMaxConcurrency(obj.optInt("syntheticMaxConcurrency", config.getSyntheticMaxConcurrency()));
+        config.setSyntheticPerHostConcurrency(
+                obj.optInt("syntheticPerHostConcurrency", config.getSyntheticPerHostConcurrency()));
+        config.setSyntheticQueueCapacity(obj.optInt("syntheticQueueCapacity", config.getSyntheticQueueCapacity()));
+        try {
+            config.setSyntheticOverflowPolicy(OverflowPolicy.valueOf(
+                    obj.optString("syntheticOverflowPolicy", OverflowPolicy.DROP_OLDEST.name())));
+        } catch (IllegalArgumentException ex) {
+            config.setSyntheticOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        }
+        config.setSyntheticVirtualThreads(
+                obj.optBoolean("syntheticVirtualThreads", config.isSyntheticVirtualThreads()));
+        config.setSyntheticAdaptiveConcurrency(
+                obj.optBoolean("syntheticAdaptiveConcurrency", config.isSyntheticAdaptiveConcurrency()));
+        config.setSyntheticRatePerSecond(obj.optInt("syntheticRatePerSecond", config.getSyntheticRatePerSecond()));
+        config.setSyntheticRateBurst(obj.optInt("syntheticRateBurst", config.getSyntheticRateBurst()));
+        config.setSyntheticTimeoutMillis(obj.optInt("syntheticTimeoutMillis", config.getSyntheticTimeoutMillis()));
+        config.setSyntheticMaxRetries(obj.optInt("syntheticMaxRetries", config.getSyntheticMaxRetries()));
+        config.setSyntheticRetryBackoffMillis(
+                obj.optInt("syntheticRetryBackoffMillis", config.getSyntheticRetryBackoffMillis()));
+        config.setSyntheticToolPriority(obj.optString("syntheticToolPriority", config.getSyntheticToolPriority()));
+        config.setSyntheticPriorityAgingMillis(
+                obj.optInt("syntheticPriorityAgingMillis", config.getSyntheticPriorityAgingMillis()));
+        config.setUnauthCacheTtlSeconds(obj.optInt("unauthCacheTtlSeconds", config.getUnauthCacheTtlSeconds()));
+        config.setUnauthCacheMaxEntries(obj.optInt("unauthCacheMaxEntries", config.getUnauthCacheMaxEntries()));
     }
 
     public static JSONObject stateToJson(ExtensionConfig config,
@@ -0,0 +1,28 @@
+package util;
+
+/**
+ * Somewhere to park the raw bytes of logged messages outside of their
+ * {@code HttpRequest}/{@code HttpResponse} objects, addressed by a
+ * {@code long} handle.
+ */
+public interface MessageStorage {
+    /** Handle value meaning "no message". */
+    long NONE = -1;
+
+    /**
+     * Stores {@code bytes} and returns a handle for them, or {@link #NONE}
+     * when this storage cannot take the message; the caller then keeps it.
+     */
+    long append(byte[] bytes);
+
+    /**
+     * The bytes behind {@code handle}, or null once released. Callers must
+     * not modify the returned array.
+     */
+    byte[] read(long handle);
+
+    /**
+     * Marks a message as no longer referenced.
+     */
+    void release(long handle);
+}
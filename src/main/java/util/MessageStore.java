@@ -0,0 +1,191 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store for raw message bytes in memory-mapped segment files.
+ * <p>
+ * Messages are appended to the current 32 MB segment and identified by a
+ * {@code long} handle packing the segment number, offset and length, so the
+ * caller keeps no object per message. Reads copy straight out of the mapping;
+ * the operating system decides which pages stay resident, so the Java heap
+ * only holds what is actually being looked at. Callers release handles they
+ * no longer reference, and a full segment is deleted once nothing in it is
+ * live. Files live in a temporary directory removed by {@link #close()}.
+ */
+public final class MessageStore implements MessageStorage, Closeable {
+    private static final int SEGMENT_SIZE = 32 << 20;
+    private static final int OFFSET_BITS = 25;
+    private static final int LENGTH_BITS = 25;
+    private static final long FIELD_MASK = (1L << OFFSET_BITS) - 1;
+    /** Keeps handles positive: 13 + 25 + 25 bits. */
+    private static final int MAX_SEGMENTS = 1 << 13;
+
+    private final Path directory;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long bytesWritten;
+    private boolean closed;
+
+    private MessageStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens an empty store in a new temporary directory.
+     */
+    public static MessageStore openTemporary() throws IOException {
+        return new MessageStore(Files.createTempDirectory("auth-mutator-log"));
+    }
+
+    /**
+     * Appends {@code bytes} and returns the handle to read them back, or
+     * {@link #NONE} when the message does not fit in a segment, the store is
+     * closed or out of segments; the caller then keeps the message itself.
+     *
+     * @throws UncheckedIOException if a new segment file cannot be created
+     */
+    @Override
+    public synchronized long append(byte[] bytes) {
+        if (closed || bytes.length >= SEGMENT_SIZE) {
+            return NONE;
+        }
+        if (active == null || active.written + bytes.length > SEGMENT_SIZE) {
+            if (segments.size() >= MAX_SEGMENTS) {
+                return NONE;
+            }
+            Segment previous = active;
+            active = openSegment(segments.size());
+            segments.add(active);
+            if (previous != null && previous.live <= 0) {
+                segments.set(previous.number, null);
+                previous.delete();
+            }
+        }
+        int offset = active.written;
+        active.buffer.put(offset, bytes);
+        active.written += bytes.length;
+        active.live++;
+        bytesWritten += bytes.length;
+        return ((long) active.number << (OFFSET_BITS + LENGTH_BITS))
+                | ((long) offset << LENGTH_BITS)
+                | bytes.length;
+    }
+
+    /**
+     * Copies out the message behind {@code handle}, or returns null if it was
+     * released or the store is closed.
+     */
+    @Override
+    public synchronized byte[] read(long handle) {
+        Segment segment = segmentOf(handle);
+        if (segment == null) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (handle & FIELD_MASK)];
+        segment.buffer.get((int) ((handle >>> LENGTH_BITS) & FIELD_MASK), bytes);
+        return bytes;
+    }
+
+    /**
+     * Marks a message as no longer referenced. Segments other than the one
+     * being written are deleted when their last message is released.
+     */
+    @Override
+    public synchronized void release(long handle) {
+        Segment segment = segmentOf(handle);
+        if (segment == null) {
+            return;
+        }
+        segment.live--;
+        if (segment.live <= 0 && segment != active) {
+            segments.set(segment.number, null);
+            segment.delete();
+        }
+    }
+
+    /** Bytes appended since the store was opened, including released ones. */
+    public synchronized long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Segment files currently on disk. */
+    public synchronized int segmentCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            if (segment != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Segment segment : segments) {
+            if (segment != null) {
+                segment.delete();
+            }
+        }
+        segments.clear();
+        active = null;
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            directory.toFile().deleteOnExit();
+        }
+    }
+
+    private Segment segmentOf(long handle) {
+        if (handle < 0 || closed) {
+            return null;
+        }
+        int number = (int) (handle >>> (OFFSET_BITS + LENGTH_BITS));
+        return number < segments.size() ? segments.get(number) : null;
+    }
+
+    private Segment openSegment(int number) {
+        Path file = directory.resolve("segment-" + number + ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            return new Segment(number, file, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create log segment " + file, e);
+        }
+    }
+
+    private static final class Segment {
+        final int number;
+        final Path file;
+        final MappedByteBuffer buffer;
+        int written;
+        int live;
+
+        Segment(int number, Path file, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Still mapped on some platforms; try again when the JVM exits
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}